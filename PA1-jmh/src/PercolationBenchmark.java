@@ -0,0 +1,97 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Per-call cost of Percolation.open, isFull and percolates on n-by-n grids
+ *
+ * open walks a fixed random permutation of the sites and resets the grid once every site is open, so the reset
+ * is amortized over n*n calls. isFull and percolates query a grid that was opened until it percolated, at random
+ * sites drawn up front so the random number generator is not part of the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PercolationBenchmark {
+
+    private static final long SEED = 20160906L;
+    private static final int QUERIES = 1 << 16;
+
+    @Param({"64", "256", "1024", "4096"})
+    public int n;
+
+    // open() state
+    private Percolation opening;
+    private int[] order;
+    private int cursor;
+
+    // isFull() / percolates() state
+    private Percolation percolated;
+    private int[] queryRows;
+    private int[] queryCols;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        order = new int[n*n];
+        for (int i = 0; i < order.length; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        opening = new Percolation(n);
+        cursor = 0;
+
+        percolated = new Percolation(n);
+        for (int i = 0; !percolated.percolates(); i++) {
+            percolated.open(order[i] / n + 1, order[i] % n + 1);
+        }
+
+        queryRows = new int[QUERIES];
+        queryCols = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            queryRows[q] = random.nextInt(n) + 1;
+            queryCols[q] = random.nextInt(n) + 1;
+        }
+        query = 0;
+    }
+
+    @Benchmark
+    public void open() {
+        if (cursor == order.length) {
+            opening.reset();
+            cursor = 0;
+        }
+        int site = order[cursor++];
+        opening.open(site / n + 1, site % n + 1);
+    }
+
+    @Benchmark
+    public boolean isFull() {
+        int q = query;
+        query = (q + 1) & (QUERIES - 1);
+        return percolated.isFull(queryRows[q], queryCols[q]);
+    }
+
+    @Benchmark
+    public boolean percolates() {
+        return percolated.percolates();
+    }
+}
@@ -0,0 +1,31 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs every percolation benchmark with the GC profiler (the same as passing -prof gc to the JMH command line)
+ * and writes the results as JSON, so a run can be kept as a baseline and later runs compared against it
+ *
+ * % java -cp <PA1 and PA1-jmh output>:lib/* PercolationBenchmarks PA1-jmh/baseline.json
+ */
+public class PercolationBenchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        if (args.length != 1) {
+            System.err.println("Usage: java PercolationBenchmarks <result.json>");
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .include(PercolationBenchmark.class.getSimpleName())
+                .include(PercolationStatsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(args[0])
+                .build();
+        new Runner(options).run();
+    }
+}
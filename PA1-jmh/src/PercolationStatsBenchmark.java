@@ -0,0 +1,39 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * End-to-end cost of a PercolationStats run: TRIALS single-threaded trials on an n-by-n grid in each TrialMode,
+ * including setting up the grid and the permutation buffer, which is what -prof gc should show being allocated
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PercolationStatsBenchmark {
+
+    private static final int TRIALS = 10;
+    private static final long SEED = 20160920L;
+
+    @Param({"64", "256", "1024", "4096"})
+    public int n;
+
+    @Param({"SAMPLE", "PERMUTATION", "THRESHOLD"})
+    public PercolationStats.TrialMode mode;
+
+    @Benchmark
+    public double run() {
+        return new PercolationStats(n, TRIALS, SEED, 1, mode).mean();
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.Arrays;
+
+/*
+ * Union-find specialized for percolation on a Lattice, by default the n-by-n square grid
+ *
+ * Sites are numbered the way the lattice numbers them. Everything lives in two primitive arrays:
+ *  - parent[site] is the parent site, or for a root the bitwise complement of (rank << 2 | top/bottom flags),
+ *    which is always negative, so a root carries its rank and whether its component touches the top/bottom row
+ *  - open is a bitset with one bit per site
+ * That is 4 bytes and 1 bit per site, memory is bounded by the parent array alone.
+ *
+ * There are no virtual top and bottom sites. A site in the first or last row simply starts out with the
+ * top or bottom flag, and unions carry the flags up to the new root, so nothing needs to be linked until
+ * a site is actually opened. The grid percolates as soon as a root has both flags, and a site is full exactly
+ * when its root has the top flag. Without a virtual bottom site there is no backwash.
+ */
+public class GridUnionFind {
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int TOP_AND_BOTTOM = TOP | BOTTOM;
+    private static final int RANK_SHIFT = 2;
+
+    private Lattice lattice;
+    private final int[] parent;
+    private final long[] open;
+    private boolean percolates;
+
+    // instrumentation, all unused while probe is null
+    private PercolationProbe probe;
+    private int[] clusterSize;      // per root, union by rank does not need sizes otherwise
+    private int largestCluster;
+    private int unionsThisOpen;
+
+    // create the union-find for an n-by-n grid, with all sites closed
+    public GridUnionFind(int n) {
+        this(Lattice.square(n));
+    }
+
+    // create the union-find for any lattice, with all sites closed
+    public GridUnionFind(Lattice lattice) {
+        this.lattice = lattice;
+        parent = new int[lattice.numberOfSites()];
+        open = new long[(lattice.numberOfSites() + 63) >>> 6];
+    }
+
+    // close every site again so the same arrays can be used for another trial
+    public void clear() {
+        // closed sites are never reached through parent, so only the open bits need clearing
+        Arrays.fill(open, 0, (lattice.numberOfSites() + 63) >>> 6, 0L);
+        percolates = false;
+        largestCluster = 0;
+        if (probe != null) {
+            // a fresh grid is a fresh trial, also when the probe was attached directly rather than by
+            // PercolationTrials
+            probe.startTrial(lattice.numberOfSites());
+        }
+    }
+
+    // report every open, union and find to probe from now on, or stop reporting when probe is null
+    public void setProbe(PercolationProbe probe) {
+        this.probe = probe;
+        if (probe != null && clusterSize == null) {
+            clusterSize = new int[parent.length];
+        }
+        if (probe != null) {
+            // the probe needs the number of sites before the first open, see PercolationProbe.recordOpen()
+            probe.startTrial(lattice.numberOfSites());
+        }
+    }
+
+    // report the size of every current cluster to the probe
+    // cluster sizes are only tracked while a probe is attached, so it must have been attached since the last clear
+    public void recordClusterSizes() {
+        if (probe == null) {
+            return;
+        }
+        for (int site = 0; site < lattice.numberOfSites(); site++) {
+            if (isOpen(site) && parent[site] < 0) {
+                probe.recordCluster(clusterSize[site]);
+            }
+        }
+    }
+
+    // switch to the same kind of lattice with side n and every site closed, reusing the arrays
+    // the new lattice may not have more sites than the one the union-find was created with
+    public void reset(int n) {
+        if (n <= 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        Lattice resized = lattice.withSize(n);
+        if (resized.numberOfSites() > parent.length) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        lattice = resized;
+        clear();
+    }
+
+    public int numberOfSites() {
+        return lattice.numberOfSites();
+    }
+
+    // open the site and union it with its open neighbors, returns the root of its component
+    // expects a valid site that is not open yet
+    public int open(int site) {
+        // open the site as a component of its own with rank 0
+        open[site >>> 6] |= 1L << site;
+        int flags = 0;
+        if (lattice.isTop(site)) {
+            flags |= TOP;
+        }
+        if (lattice.isBottom(site)) {
+            flags |= BOTTOM;
+        }
+        parent[site] = ~flags;
+        if (probe != null) {
+            clusterSize[site] = 1;
+            unionsThisOpen = 0;
+        }
+
+        // walk the precomputed neighbor offsets of the site's boundary class
+        int root = site;
+        int cls = lattice.neighborClass(site);
+        int degree = lattice.degree(cls);
+        for (int k = 0; k < degree; k++) {
+            root = unionOpenNeighbor(root, site + lattice.neighborOffset(cls, k));
+        }
+
+        if (probe != null) {
+            largestCluster = Math.max(largestCluster, clusterSize[root]);
+            probe.recordOpen(unionsThisOpen, largestCluster);
+        }
+
+        if ((~parent[root] & TOP_AND_BOTTOM) == TOP_AND_BOTTOM) {
+            percolates = true;
+        }
+        return root;
+    }
+
+    // merge the component rooted at root with the neighbor's component if the neighbor is open
+    // returns the root of the merged component
+    private int unionOpenNeighbor(int root, int neighbor) {
+        if (!isOpen(neighbor)) {
+            return root;
+        }
+
+        if (probe != null) {
+            probe.recordFindDepth(depth(neighbor));
+        }
+        int other = find(neighbor);
+        if (other == root) {
+            return root;
+        }
+
+        // union by rank: hang the shallower tree under the deeper one and carry its top/bottom flags along
+        int rootInfo = ~parent[root];
+        int otherInfo = ~parent[other];
+        if ((rootInfo >>> RANK_SHIFT) < (otherInfo >>> RANK_SHIFT)) {
+            int tmp = root;
+            root = other;
+            other = tmp;
+            tmp = rootInfo;
+            rootInfo = otherInfo;
+            otherInfo = tmp;
+        }
+        if ((rootInfo >>> RANK_SHIFT) == (otherInfo >>> RANK_SHIFT)) {
+            rootInfo += 1 << RANK_SHIFT;
+        }
+        parent[root] = ~(rootInfo | (otherInfo & TOP_AND_BOTTOM));
+        parent[other] = root;
+
+        if (probe != null) {
+            clusterSize[root] += clusterSize[other];
+            unionsThisOpen++;
+        }
+        return root;
+    }
+
+    // number of parent links between the site and its root, without compressing anything
+    private int depth(int site) {
+        int depth = 0;
+        while (parent[site] >= 0) {
+            site = parent[site];
+            depth++;
+        }
+        return depth;
+    }
+
+    // root of the site's component, with path halving (every visited site is pointed at its grandparent)
+    // expects an open site
+    public int find(int site) {
+        while (parent[site] >= 0) {
+            int up = parent[site];
+            if (parent[up] >= 0) {
+                parent[site] = parent[up];
+                up = parent[up];
+            }
+            site = up;
+        }
+        return site;
+    }
+
+    public boolean isOpen(int site) {
+        return (open[site >>> 6] & (1L << site)) != 0;
+    }
+
+    // is the site open and connected to the top row?
+    public boolean isFull(int site) {
+        return isOpen(site) && (~parent[find(site)] & TOP) != 0;
+    }
+
+    // does some component touch both the top and the bottom row?
+    public boolean percolates() {
+        return percolates;
+    }
+}
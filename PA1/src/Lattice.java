@@ -0,0 +1,228 @@
+/*
+ * Site lattice for percolation: which sites exist, which are neighbors, and which touch the top and bottom
+ *
+ * Sites are numbered 0..numberOfSites()-1 in row-major order over the lattice's extents, axis 0 varying slowest,
+ * so the top is every site with coordinate 0 on axis 0 and the bottom every site with the last coordinate.
+ *
+ * Every neighbor is a unit step on each axis, so whether a neighbor exists only depends on which axes the site
+ * is at the low and/or high end of (and, on the honeycomb, on the parity of its coordinate sum). Each such
+ * combination is a neighbor class, and for every class the flat index offsets of the existing neighbors are
+ * computed up front. Walking the neighbors of a site is then one class computation plus a table scan with no
+ * bounds checks or per-neighbor coordinate arithmetic. The class is final so calls from the union-find inline.
+ */
+public final class Lattice {
+
+    // kinds of lattice, used to rebuild the same lattice at another size
+    public enum Kind {
+        HYPERCUBIC,     // nearest neighbors along every axis, d = 2 is the square grid and d = 3 the cubic one
+        TRIANGULAR,     // 2d, six neighbors per site
+        HONEYCOMB       // 2d brick-wall embedding of the hexagonal lattice, three neighbors per site
+    }
+
+    private static final int MAX_DIMENSION = 8;
+
+    // boundary status of a coordinate, both bits set when the axis has a single coordinate
+    private static final int LOW = 1;
+    private static final int HIGH = 2;
+    private static final int STATUS_BITS = 2;
+
+    private final Kind kind;
+    private final int size;
+    private final int[] extents;
+    private final int[] strides;
+    private final int numSites;
+    private final boolean parityDependent;
+    private final int maxDegree;
+    private final int[] offsets;        // offsets[cls * maxDegree + k] = k-th neighbor offset of a class cls site
+    private final int[] degrees;        // degrees[cls] = number of neighbors of a class cls site
+
+    // n-by-n square grid with four neighbors per site, the lattice Percolation uses
+    public static Lattice square(int n) {
+        return hypercubic(2, n);
+    }
+
+    // n-by-n-by-n cubic lattice with six neighbors per site
+    public static Lattice cubic(int n) {
+        return hypercubic(3, n);
+    }
+
+    // d-dimensional lattice of side n with 2*d neighbors per site
+    public static Lattice hypercubic(int d, int n) {
+        if (d <= 0 || d > MAX_DIMENSION) {
+            throw new java.lang.IllegalArgumentException("dimension must be between 1 and " + MAX_DIMENSION);
+        }
+
+        int[][] steps = new int[2*d][d];
+        for (int a = 0; a < d; a++) {
+            steps[2*a][a] = -1;
+            steps[2*a + 1][a] = 1;
+        }
+        return new Lattice(Kind.HYPERCUBIC, d, n, steps, null);
+    }
+
+    // n-by-n triangular lattice, a square grid plus the (-1, +1) and (+1, -1) diagonals
+    public static Lattice triangular(int n) {
+        int[][] steps = { {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0} };
+        return new Lattice(Kind.TRIANGULAR, 2, n, steps, null);
+    }
+
+    // n-by-n honeycomb lattice in its brick-wall form: left and right neighbors always,
+    // plus the site below when row + col is even and the site above when it is odd
+    public static Lattice honeycomb(int n) {
+        int[][] steps = { {0, -1}, {0, 1}, {1, 0}, {-1, 0} };
+        int[] parity = { -1, -1, 0, 1 };
+        return new Lattice(Kind.HONEYCOMB, 2, n, steps, parity);
+    }
+
+    // the same kind of lattice, with side n
+    public Lattice withSize(int n) {
+        if (n == size) {
+            return this;
+        }
+
+        switch (kind) {
+            case TRIANGULAR:
+                return triangular(n);
+            case HONEYCOMB:
+                return honeycomb(n);
+            default:
+                return hypercubic(extents.length, n);
+        }
+    }
+
+    // steps[i] is the displacement to the i-th neighbor, stepParity[i] the parity of the coordinate sum the
+    // step applies to (-1 for every site), or null when no step depends on parity
+    private Lattice(Kind kind, int d, int n, int[][] steps, int[] stepParity) {
+        if (n <= 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        long sites = 1;
+        for (int a = 0; a < d; a++) {
+            sites *= n;
+            // sites are indexed with an int
+            if (sites > Integer.MAX_VALUE - 8) {
+                throw new java.lang.IllegalArgumentException("lattice too large: side " + n + " in " + d + "d");
+            }
+        }
+
+        this.kind = kind;
+        this.size = n;
+        this.numSites = (int) sites;
+        this.parityDependent = stepParity != null;
+        this.maxDegree = steps.length;
+
+        extents = new int[d];
+        strides = new int[d];
+        int stride = 1;
+        for (int a = d - 1; a >= 0; a--) {
+            extents[a] = n;
+            strides[a] = stride;
+            stride *= n;
+        }
+
+        int numClasses = (1 << (STATUS_BITS * d)) * (parityDependent ? 2 : 1);
+        offsets = new int[numClasses * maxDegree];
+        degrees = new int[numClasses];
+        for (int cls = 0; cls < numClasses; cls++) {
+            // decode in the reverse order neighborClass() encodes
+            int rest = cls;
+            int parity = 0;
+            if (parityDependent) {
+                parity = rest & 1;
+                rest >>>= 1;
+            }
+            int[] status = new int[d];
+            for (int a = d - 1; a >= 0; a--) {
+                status[a] = rest & ((1 << STATUS_BITS) - 1);
+                rest >>>= STATUS_BITS;
+            }
+
+            int degree = 0;
+            for (int i = 0; i < steps.length; i++) {
+                if (parityDependent && stepParity[i] >= 0 && stepParity[i] != parity) {
+                    continue;
+                }
+
+                boolean exists = true;
+                int offset = 0;
+                for (int a = 0; a < d; a++) {
+                    if ((steps[i][a] < 0 && (status[a] & LOW) != 0) || (steps[i][a] > 0 && (status[a] & HIGH) != 0)) {
+                        exists = false;
+                        break;
+                    }
+                    offset += steps[i][a] * strides[a];
+                }
+                if (exists) {
+                    offsets[cls * maxDegree + degree++] = offset;
+                }
+            }
+            degrees[cls] = degree;
+        }
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    // side length along every axis
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return extents.length;
+    }
+
+    public int numberOfSites() {
+        return numSites;
+    }
+
+    // is this the 2d square grid Percolation works on?
+    public boolean isSquare() {
+        return kind == Kind.HYPERCUBIC && extents.length == 2;
+    }
+
+    public boolean isTop(int site) {
+        return site < strides[0];
+    }
+
+    public boolean isBottom(int site) {
+        return site >= numSites - strides[0];
+    }
+
+    // neighbor class of a site, to be passed to degree() and neighborOffset()
+    public int neighborClass(int site) {
+        int cls = 0;
+        int coordinateSum = 0;
+        int rest = site;
+        for (int a = 0; a < extents.length; a++) {
+            int coordinate = rest / strides[a];
+            rest -= coordinate * strides[a];
+            coordinateSum += coordinate;
+
+            int status = 0;
+            if (coordinate == 0) {
+                status |= LOW;
+            }
+            if (coordinate == extents[a] - 1) {
+                status |= HIGH;
+            }
+            cls = (cls << STATUS_BITS) | status;
+        }
+        if (parityDependent) {
+            cls = (cls << 1) | (coordinateSum & 1);
+        }
+        return cls;
+    }
+
+    // number of neighbors of a site of class cls
+    public int degree(int cls) {
+        return degrees[cls];
+    }
+
+    // site + neighborOffset(cls, k) is the k-th neighbor of a site of class cls, for 0 <= k < degree(cls)
+    public int neighborOffset(int cls, int k) {
+        return offsets[cls * maxDegree + k];
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Percolation backend for grids that do not fit in the heap
+ *
+ * Uses the same union-find layout as GridUnionFind (one parent entry per site, roots store the complement of
+ * (rank << 2 | top/bottom flags), one open bit per site) but indexes sites with a long and keeps everything in
+ * a memory-mapped temporary file. An n-by-n grid costs 8 bytes + 1 bit per site of page cache and disk instead
+ * of heap, so the GC never sees it. The file starts with the open bitset, followed by the parent entries, and
+ * is mapped in segments of 1 GiB because a single mapping is limited to 2 GiB.
+ */
+public class MappedPercolation implements Closeable {
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int TOP_AND_BOTTOM = TOP | BOTTOM;
+    private static final int RANK_SHIFT = 2;
+
+    private static final int SEGMENT_SHIFT = 27; // 2^27 longs = 1 GiB per mapping
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private int gridSize;
+    private final long numSitesCapacity;
+    private final long openWords; // number of longs taken by the open bitset at the start of the file
+    private final File file;
+    private final FileChannel channel;
+    private final LongBuffer[] segments;
+    private boolean percolates;
+
+    // create n-by-n grid, with all sites blocked, backed by a temporary file in the given directory
+    public MappedPercolation(int n, File directory) {
+        if (n <= 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        gridSize = n;
+        numSitesCapacity = (long) n * n;
+        openWords = (numSitesCapacity + 63) >>> 6;
+        long totalWords = openWords + numSitesCapacity;
+
+        FileChannel ch = null;
+        try {
+            file = File.createTempFile("percolation-", ".grid", directory);
+            file.deleteOnExit();
+            ch = new RandomAccessFile(file, "rw").getChannel();
+
+            // mapping past the end grows the file, and the new pages read as zeros = every site closed
+            int numSegments = (int) ((totalWords + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            segments = new LongBuffer[numSegments];
+            for (int s = 0; s < numSegments; s++) {
+                long firstWord = (long) s << SEGMENT_SHIFT;
+                long words = Math.min(1L << SEGMENT_SHIFT, totalWords - firstWord);
+                segments[s] = ch.map(FileChannel.MapMode.READ_WRITE, firstWord * Long.BYTES, words * Long.BYTES)
+                        .order(ByteOrder.nativeOrder())
+                        .asLongBuffer();
+            }
+            channel = ch;
+        } catch (IOException e) {
+            closeQuietly(ch);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel ch) {
+        if (ch == null) {
+            return;
+        }
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+            // already failing, keep the original exception
+        }
+    }
+
+    // block every site again so the same file can be used for another trial
+    public void reset() {
+        // closed sites are never reached through their parent entry, so only the open bits need clearing
+        long usedWords = ((long) gridSize * gridSize + 63) >>> 6;
+        for (long w = 0; w < usedWords; w++) {
+            setWord(w, 0L);
+        }
+        percolates = false;
+    }
+
+    // same as above, switching to an n-by-n grid no larger than the one this was created with
+    public void reset(int n) {
+        if (n <= 0 || (long) n * n > numSitesCapacity) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        gridSize = n;
+        reset();
+    }
+
+    // open site (row i, column j) if it is not open already
+    public void open(int row, int col) {
+        validateIndices(row, col);
+
+        long site = getSiteIndex(row, col);
+        if (isOpen(site)) {
+            return;
+        }
+
+        // open the site as a component of its own with rank 0
+        long openWord = site >>> 6;
+        setWord(openWord, word(openWord) | (1L << site));
+        int flags = 0;
+        if (row == 1) {
+            flags |= TOP;
+        }
+        if (row == gridSize) {
+            flags |= BOTTOM;
+        }
+        setParent(site, ~flags);
+
+        long root = site;
+        if (row > 1) {
+            root = unionOpenNeighbor(root, site - gridSize); // above
+        }
+        if (row < gridSize) {
+            root = unionOpenNeighbor(root, site + gridSize); // below
+        }
+        if (col > 1) {
+            root = unionOpenNeighbor(root, site - 1); // left
+        }
+        if (col < gridSize) {
+            root = unionOpenNeighbor(root, site + 1); // right
+        }
+
+        if ((~parent(root) & TOP_AND_BOTTOM) == TOP_AND_BOTTOM) {
+            percolates = true;
+        }
+    }
+
+    // merge the component rooted at root with the neighbor's component if the neighbor is open
+    // returns the root of the merged component
+    private long unionOpenNeighbor(long root, long neighbor) {
+        if (!isOpen(neighbor)) {
+            return root;
+        }
+
+        long other = find(neighbor);
+        if (other == root) {
+            return root;
+        }
+
+        // union by rank, carrying the top/bottom flags along to the new root
+        long rootInfo = ~parent(root);
+        long otherInfo = ~parent(other);
+        if ((rootInfo >>> RANK_SHIFT) < (otherInfo >>> RANK_SHIFT)) {
+            long tmp = root;
+            root = other;
+            other = tmp;
+            tmp = rootInfo;
+            rootInfo = otherInfo;
+            otherInfo = tmp;
+        }
+        if ((rootInfo >>> RANK_SHIFT) == (otherInfo >>> RANK_SHIFT)) {
+            rootInfo += 1 << RANK_SHIFT;
+        }
+        setParent(root, ~(rootInfo | (otherInfo & TOP_AND_BOTTOM)));
+        setParent(other, root);
+        return root;
+    }
+
+    // root of the site's component, with path halving
+    private long find(long site) {
+        long up = parent(site);
+        while (up >= 0) {
+            long grandparent = parent(up);
+            if (grandparent >= 0) {
+                setParent(site, grandparent);
+                up = grandparent;
+            }
+            site = up;
+            up = parent(site);
+        }
+        return site;
+    }
+
+    // is site (row i, column j) open?
+    public boolean isOpen(int i, int j) {
+        validateIndices(i, j);
+        return isOpen(getSiteIndex(i, j));
+    }
+
+    // is site (row i, column j) full?
+    public boolean isFull(int i, int j) {
+        validateIndices(i, j);
+        long site = getSiteIndex(i, j);
+        return isOpen(site) && (~parent(find(site)) & TOP) != 0;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // release the mapping's file, the instance must not be used afterwards
+    public void close() throws IOException {
+        channel.close();
+        file.delete();
+    }
+
+    private boolean isOpen(long site) {
+        return (word(site >>> 6) & (1L << site)) != 0;
+    }
+
+    private long parent(long site) {
+        return word(openWords + site);
+    }
+
+    private void setParent(long site, long value) {
+        setWord(openWords + site, value);
+    }
+
+    private long word(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    private void setWord(long index, long value) {
+        segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    // checks that indices i and j are inside the map bounds
+    private void validateIndices(int i, int j) {
+        if (i < 1 || i > gridSize || j < 1 || j > gridSize) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+    }
+
+    // expects only valid input
+    private long getSiteIndex(int row, int col) {
+        return (long) (row-1)*gridSize + (col-1);
+    }
+
+    // unit testing (optional), mapping temporary files in the given directory or java.io.tmpdir
+    public static void main(String[] args) throws IOException {
+        File directory = new File((args.length > 0) ? args[0] : System.getProperty("java.io.tmpdir"));
+
+        test3x3(directory);
+
+        testBeyondIntIndex(directory);
+
+        testEngineBeyondIntIndex(directory);
+    }
+
+    private static void test3x3(File directory) throws IOException {
+        System.out.println("3x3 Test");
+        MappedPercolation p = new MappedPercolation(3, directory);
+        p.open(1, 2);
+        p.open(2, 2);
+        assert p.isFull(2, 2);
+        assert !p.percolates();
+        p.open(3, 3);
+        assert !p.isFull(3, 3);
+        p.open(3, 2);
+        assert p.isFull(3, 3);
+        assert p.percolates();
+        p.close();
+    }
+
+    // sites past Integer.MAX_VALUE: the corner of a 50000-by-50000 grid is site 2499999999
+    // the file is 20 GB but sparse, only the touched pages are ever written
+    private static void testBeyondIntIndex(File directory) throws IOException {
+        System.out.println("50000x50000 Test");
+        int n = 50000;
+        MappedPercolation p = new MappedPercolation(n, directory);
+        p.open(n, n);
+        p.open(n - 1, n);
+        p.open(n, n - 1);
+        assert p.isOpen(n, n) && p.isOpen(n - 1, n) && p.isOpen(n, n - 1);
+        assert !p.isOpen(n - 1, n - 1);
+        assert !p.isOpen(n - 2, n);
+        assert !p.isFull(n - 1, n);
+        assert !p.percolates();
+
+        // the same file still works as a small grid
+        p.reset(2);
+        assert !p.isOpen(2, 2);
+        p.open(1, 1);
+        p.open(2, 1);
+        assert p.percolates();
+        p.close();
+    }
+
+    // an engine built for a grid past the int index range used to throw from Lattice.square() before running
+    // anything; it must run smaller trials on the same file and match the heap backend draw for draw
+    private static void testEngineBeyondIntIndex(File directory) {
+        System.out.println("Engine 50000 Test");
+        RunningStats heap;
+        try (PercolationTrials engine = new PercolationTrials(64, 42, 1, PercolationStats.TrialMode.SAMPLE, null,
+                null)) {
+            heap = engine.run(64, 5, 0.0);
+        }
+        try (PercolationTrials engine = new PercolationTrials(50000, 42, 1, PercolationStats.TrialMode.SAMPLE,
+                directory, null)) {
+            RunningStats mapped = engine.run(64, 5, 0.0);
+            assert mapped.mean() == heap.mean() : mapped.mean() + " != " + heap.mean();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.File;
+
+/*
+ * Compares the on-heap and the memory-mapped percolation backends
+ *
+ * Both runs use the same seed and TrialMode.SAMPLE, so they open the same sites in the same order and must report
+ * the same statistics, only the time differs.
+ *
+ * % java MappedPercolationBenchmark 2048 8 4 /tmp
+ */
+public class MappedPercolationBenchmark {
+
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: java MappedPercolationBenchmark <n> <trials> <threads> <directory>");
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        File directory = new File(args[3]);
+        long seed = 20160920L;
+
+        Stopwatch heapTimer = new Stopwatch();
+        PercolationStats heap = new PercolationStats(n, trials, seed, threads, PercolationStats.TrialMode.SAMPLE);
+        double heapTime = heapTimer.elapsedTime();
+
+        Stopwatch mappedTimer = new Stopwatch();
+        PercolationStats mapped = new PercolationStats(n, trials, seed, threads, PercolationStats.TrialMode.SAMPLE,
+                directory);
+        double mappedTime = mappedTimer.elapsedTime();
+
+        System.out.printf("%-8s %10s %10s %12s\n", "backend", "mean", "stddev", "seconds");
+        System.out.printf("%-8s %10f %10f %12.3f\n", "heap", heap.mean(), heap.stddev(), heapTime);
+        System.out.printf("%-8s %10f %10f %12.3f\n", "mapped", mapped.mean(), mapped.stddev(), mappedTime);
+    }
+}
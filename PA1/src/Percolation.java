@@ -2,7 +2,7 @@
  * Created by Matthew Huynh on 9/6/2016.
  */
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.BitSet;
 
 public class Percolation {
 
@@ -10,10 +10,8 @@ public class Percolation {
     private static final int SITE_STATE_OPEN = 1;
     private static final int SITE_STATE_FULL = 2;
 
-    private WeightedQuickUnionUF map;
+    private GridUnionFind sites; // union-find plus open/full state of every site
     private int gridSize; // this is necessary to navigate our array
-    private int[] openFull; // -1 = closed, 0 = open, 1 = full
-    private int topSiteComponentId, bottomSiteComponentId;
 
     // create n-by-n grid, with all sites blocked
     public Percolation(int n) {
@@ -22,27 +20,30 @@ public class Percolation {
             throw new java.lang.IllegalArgumentException();
         }
 
-        // add 2 spots at the end of the array for the virtual top and bottom sites
-        map = new WeightedQuickUnionUF(n*n + 2);
+        // the top and bottom rows are linked lazily as their sites open, so there is nothing else to set up
+        sites = new GridUnionFind(n);
         gridSize = n;
+    }
 
-        // each site should be initialized as closed
-        openFull = new int[n * n];
-        for (int i = 0; i < openFull.length; i++) {
-            openFull[i] = SITE_STATE_CLOSED;
-        }
+    // block every site again so the grid can be reused without reallocating it
+    public void reset() {
+        sites.clear();
+    }
 
-        // initialize virtual top and bottom sites
-        topSiteComponentId = map.find(n*n); // 2nd to last
-        bottomSiteComponentId = map.find(n*n+1); // last
-        for (int topSiteCol = 1; topSiteCol <= gridSize; topSiteCol++) {
-            int topSiteIdx = getArrayIndex(1, topSiteCol);
-            map.union(topSiteIdx, topSiteComponentId);
-        }
-        for (int bottomSiteCol = 1; bottomSiteCol <= gridSize; bottomSiteCol++) {
-            int bottomSiteIdx = getArrayIndex(gridSize, bottomSiteCol);
-            map.union(bottomSiteIdx, bottomSiteComponentId);
-        }
+    // same as above, switching to an n-by-n grid no larger than the one this was created with
+    public void reset(int n) {
+        sites.reset(n);
+        gridSize = n;
+    }
+
+    // collect instrumentation into probe from now on, see PercolationProbe, or stop when probe is null
+    public void setProbe(PercolationProbe probe) {
+        sites.setProbe(probe);
+    }
+
+    // report the size of every current cluster to the attached probe
+    public void recordClusterSizes() {
+        sites.recordClusterSizes();
     }
 
     // open site (row i, column j) if it is not open already
@@ -56,118 +57,74 @@ public class Percolation {
             return;
         } else {
             // System.out.printf("Opening (%d, %d)\n", row, col);
-            // mark the site as open
-            int newSiteArrIdx = getArrayIndex(row, col);
-            openFull[newSiteArrIdx] = SITE_STATE_OPEN;
-
-            // check if any adjacent sites are open and union with them if so
-            unionNeighbors(row, col);
-
-            // if the newly opened site is a top node OR a nearby site is full, promote the site from open to full
-            if (row == 1 || hasFullNeighbor(row, col)) {
-                openFull[newSiteArrIdx] = SITE_STATE_FULL;
-            }
-
-            // if new site is full, spread to neighbor open sites
-            if (openFull[newSiteArrIdx] == SITE_STATE_FULL) {
-                spreadLiquid(row, col);
-            }
+            // mark the site as open and union it with any adjacent open sites
+            // fullness is read off the component root later, so there is nothing to flood
+            sites.open(getArrayIndex(row, col));
         }
     }
 
-    private void spreadLiquid(int sourceRow, int sourceCol) {
-        // start from a source and spread liquid to open sites
-        spreadLiquid(sourceRow, sourceCol, sourceRow-1, sourceCol); // above
-        spreadLiquid(sourceRow, sourceCol, sourceRow+1, sourceCol); // below
-        spreadLiquid(sourceRow, sourceCol, sourceRow, sourceCol-1); // left
-        spreadLiquid(sourceRow, sourceCol, sourceRow, sourceCol+1); // right
+    // open the closed site with flat index site, (row-1)*n + (col-1), without any of open()'s checks
+    // for callers that draw sites from a permutation of the grid, so every site is valid and closed by construction
+    void openSite(int site) {
+        sites.open(site);
     }
 
-    private void spreadLiquid(int sourceRow, int sourceCol, int targetRow, int targetCol) {
-        // if either targetRow or targetCol is invalid, return
-        if (!validateIndicesNoThrow(targetRow, targetCol)) {
-            return;
-        }
-
-        // if we're trying to spread to the source, return
-        if (sourceRow == targetRow && sourceCol == targetCol) {
-            return;
-        }
-
-        // if site is already full, return (because the liquid already spread from that site)
-        if (isFull(targetRow, targetCol)) {
-            return;
+    // open the sites flatIndices[from..to-1], where site (row, col) has flat index (row-1)*n + (col-1)
+    // the whole range is checked once up front instead of on every site, sites that are already open are skipped
+    // returns the position in flatIndices of the site whose opening made the system percolate,
+    // or -1 if it did not start percolating during this call
+    public int openAll(int[] flatIndices, int from, int to) {
+        if (flatIndices == null) {
+            throw new java.lang.IllegalArgumentException();
         }
-
-        // if site is open, mark as full and then spread the liquid to neighbors
-        if (isOpen(targetRow, targetCol)) {
-            openFull[getArrayIndex(targetRow, targetCol)] = SITE_STATE_FULL;
-
-            // call this method on all neighbors to spread liquid
-            spreadLiquid(sourceRow, sourceCol, targetRow-1, targetCol); // above
-            spreadLiquid(sourceRow, sourceCol, targetRow+1, targetCol); // below
-            spreadLiquid(sourceRow, sourceCol, targetRow, targetCol-1); // left
-            spreadLiquid(sourceRow, sourceCol, targetRow, targetCol+1); // right
+        if (from < 0 || to > flatIndices.length || from > to) {
+            throw new java.lang.IndexOutOfBoundsException();
         }
-    }
-
-    private boolean hasFullNeighbor(int row, int col) {
-        // above
-        if (validateIndicesNoThrow(row-1, col)) {
-            if (isFull(row-1, col)) {
-                return true;
+        int numSites = gridSize*gridSize;
+        for (int i = from; i < to; i++) {
+            if (flatIndices[i] < 0 || flatIndices[i] >= numSites) {
+                throw new java.lang.IndexOutOfBoundsException("flat index " + flatIndices[i]);
             }
         }
 
-        // below
-        if (validateIndicesNoThrow(row+1, col)) {
-            if (isFull(row+1, col)) {
-                return true;
+        int percolatedAt = -1;
+        boolean percolated = sites.percolates();
+        for (int i = from; i < to; i++) {
+            int site = flatIndices[i];
+            if (!sites.isOpen(site)) {
+                sites.open(site);
+                if (!percolated && sites.percolates()) {
+                    percolated = true;
+                    percolatedAt = i;
+                }
             }
         }
+        return percolatedAt;
+    }
 
-        // left
-        if (validateIndicesNoThrow(row, col-1)) {
-            if (isFull(row, col-1)) {
-                return true;
-            }
+    // open every site whose flat index (see openAll) is set in mask, in increasing index order
+    // returns the flat index of the site whose opening made the system percolate,
+    // or -1 if it did not start percolating during this call
+    public int openMask(BitSet mask) {
+        if (mask == null) {
+            throw new java.lang.IllegalArgumentException();
         }
-
-        // right
-        if (validateIndicesNoThrow(row, col+1)) {
-            if (isFull(row, col+1)) {
-                return true;
-            }
+        if (mask.length() > gridSize*gridSize) {
+            throw new java.lang.IndexOutOfBoundsException("flat index " + (mask.length() - 1));
         }
 
-        return false;
-    }
-
-    // tries to union a neighboring site if site node exists
-    private void tryUnionNeighbor(int newSiteRow, int newSiteCol, int neighborRow, int neighborCol) {
-        if (validateIndicesNoThrow(neighborRow, neighborCol)) {
-            if (isOpen(neighborRow, neighborCol)) {
-                int newSiteIdx = getArrayIndex(newSiteRow, newSiteCol);
-                int neighborIdx = getArrayIndex(neighborRow, neighborCol);
-                // System.out.println("tryUnionNeighbor: newSiteIdx=" + newSiteIdx + ", neighborIdx=" + neighborIdx);
-                map.union(newSiteIdx, neighborIdx);
+        int percolatedAt = -1;
+        boolean percolated = sites.percolates();
+        for (int site = mask.nextSetBit(0); site >= 0; site = mask.nextSetBit(site + 1)) {
+            if (!sites.isOpen(site)) {
+                sites.open(site);
+                if (!percolated && sites.percolates()) {
+                    percolated = true;
+                    percolatedAt = site;
+                }
             }
         }
-    }
-
-    // find the above, below, left, and right of the new site and union if possible
-    private void unionNeighbors(int row, int col) {
-        // above
-        tryUnionNeighbor(row, col, row-1, col);
-
-        // below
-        tryUnionNeighbor(row, col, row+1, col);
-
-        // left
-        tryUnionNeighbor(row, col, row, col-1);
-
-        // right
-        tryUnionNeighbor(row, col, row, col+1);
+        return percolatedAt;
     }
 
     // is site (row i, column j) open?
@@ -175,8 +132,7 @@ public class Percolation {
         // the upper-left site is indexed (1, 1) but it will be presented as (0, 0) in our map
         validateIndices(i, j);
 
-        int pos = getArrayIndex(i, j);
-        return openFull[pos] != SITE_STATE_CLOSED;
+        return sites.isOpen(getArrayIndex(i, j));
     }
 
     // is site (row i, column j) full?
@@ -184,8 +140,7 @@ public class Percolation {
         // the upper-left site is indexed (1, 1) but it will be presented as (0, 0) in our map
         validateIndices(i, j);
 
-        int pos = getArrayIndex(i, j);
-        return openFull[pos] == SITE_STATE_FULL;
+        return sites.isFull(getArrayIndex(i, j));
     }
 
     // checks that indices i and j are inside the map bounds
@@ -195,14 +150,6 @@ public class Percolation {
         }
     }
 
-    // true if valid indices, false otherwise
-    private boolean validateIndicesNoThrow(int i, int j) {
-        if (i < 1 || i > gridSize || j < 1 || j > gridSize) {
-            return false;
-        }
-        return true;
-    }
-
     // expects only valid input
     private int getArrayIndex(int row, int col) {
         return (row-1)*gridSize + (col-1);
@@ -210,12 +157,7 @@ public class Percolation {
 
     // does the system percolate?
     public boolean percolates() {
-        // special case grid 1 where it will only percolate iff the site is full
-        if (gridSize == 1) {
-            return isFull(1, 1);
-        }
-
-        return map.connected(topSiteComponentId, bottomSiteComponentId);
+        return sites.percolates();
     }
 
     public static void main(String[] args) {
@@ -228,6 +170,57 @@ public class Percolation {
         test3x3();
 
         test5x5();
+
+        testBulkOpen();
+
+        testProbe();
+    }
+
+    private static void testProbe() {
+        System.out.println("Probe Test");
+        // a probe attached directly, without PercolationTrials starting its trials
+        Percolation p = new Percolation(4);
+        PercolationProbe probe = new PercolationProbe();
+        p.setProbe(probe);
+        for (int row = 1; row <= 4; row++) {
+            p.open(row, 1);
+        }
+        assert p.percolates();
+        assert probe.unionsPerOpen().count() == 4;
+        assert probe.largestClusterFraction(25) == 4 / 16.0;
+
+        // reset starts a new trial, so the open fraction does not keep counting past 100%
+        p.reset();
+        for (int row = 1; row <= 4; row++) {
+            for (int col = 1; col <= 4; col++) {
+                p.open(row, col);
+            }
+        }
+        assert probe.unionsPerOpen().count() == 20;
+        assert probe.largestClusterFraction(100) == 1.0;
+    }
+
+    private static void testBulkOpen() {
+        System.out.println("Bulk open Test");
+        Percolation p = new Percolation(3);
+        // middle column from the bottom up, with a repeat and a site that is not on the path
+        int[] sites = {7, 7, 0, 4, 1};
+        int at = p.openAll(sites, 0, sites.length);
+        assert at == 4;
+        assert p.isOpen(3, 2);
+        assert p.isFull(2, 2);
+        assert p.isFull(1, 1);
+        assert p.openAll(sites, 0, sites.length) == -1;
+
+        BitSet mask = new BitSet();
+        mask.set(2);
+        mask.set(5);
+        mask.set(8);
+        Percolation q = new Percolation(3);
+        at = q.openMask(mask);
+        assert at == 8;
+        assert q.percolates();
+        assert !q.isOpen(1, 1);
     }
 
     private static void test1x1() {
@@ -304,7 +297,9 @@ public class Percolation {
         for (int row = 0; row < gridSize; row++) {
             for (int col = 0; col < gridSize; col++) {
                 int pos = row*gridSize + col;
-                System.out.print(openFull[pos] + " ");
+                int siteState = sites.isFull(pos) ? SITE_STATE_FULL
+                        : sites.isOpen(pos) ? SITE_STATE_OPEN : SITE_STATE_CLOSED;
+                System.out.print(siteState + " ");
             }
             System.out.println();
         }
@@ -0,0 +1,229 @@
+/*
+ * Opt-in instrumentation for percolation trials
+ *
+ * Attach a probe to a GridUnionFind or a Percolation (or ask PercolationTrials / PercolationStats for one) to collect:
+ *  - how many unions every open did
+ *  - how many parent links each find had to follow before path halving, i.e. union-find path lengths
+ *  - the size of every cluster at the moment each trial stopped
+ *  - the largest cluster as the fraction of open sites grows, averaged over trials
+ *  - the wall-clock time of every trial
+ * Without a probe the union-find only pays a null check per open and per union.
+ *
+ * A probe is not thread-safe: give every thread its own and merge() them afterwards.
+ *
+ * % java PercolationProbe 512 100 42 4 threshold
+ */
+public class PercolationProbe {
+
+    private static final int OPEN_PERCENT_BUCKETS = 101;
+
+    private final Histogram unionsPerOpen = new Histogram();
+    private final Histogram findDepth = new Histogram();
+    private final Histogram clusterSizes = new Histogram();
+    private final Histogram trialNanos = new Histogram();
+
+    // largest cluster / sites, summed over trials, sampled the first time each whole percent of sites is open
+    private final double[] largestClusterSum = new double[OPEN_PERCENT_BUCKETS];
+    private final long[] largestClusterSamples = new long[OPEN_PERCENT_BUCKETS];
+
+    // state of the trial in progress
+    private int trialSites;
+    private long trialOpens;
+    private int lastOpenPercent;
+
+    // a new trial on numSites sites starts
+    public void startTrial(int numSites) {
+        trialSites = numSites;
+        trialOpens = 0;
+        lastOpenPercent = -1;
+    }
+
+    // a site was opened, doing unions unions, and the largest cluster now has largestCluster sites
+    public void recordOpen(int unions, int largestCluster) {
+        unionsPerOpen.record(unions);
+
+        trialOpens++;
+        int openPercent = (int) (100 * trialOpens / trialSites);
+        if (openPercent != lastOpenPercent) {
+            lastOpenPercent = openPercent;
+            largestClusterSum[openPercent] += (double) largestCluster / trialSites;
+            largestClusterSamples[openPercent]++;
+        }
+    }
+
+    // a find followed depth parent links to reach the root
+    public void recordFindDepth(int depth) {
+        findDepth.record(depth);
+    }
+
+    // one cluster of the finished trial had size sites
+    public void recordCluster(int size) {
+        clusterSizes.record(size);
+    }
+
+    // the trial in progress finished after nanos nanoseconds
+    public void endTrial(long nanos) {
+        trialNanos.record(nanos);
+    }
+
+    // add everything other has recorded to this probe
+    public void merge(PercolationProbe other) {
+        unionsPerOpen.merge(other.unionsPerOpen);
+        findDepth.merge(other.findDepth);
+        clusterSizes.merge(other.clusterSizes);
+        trialNanos.merge(other.trialNanos);
+        for (int p = 0; p < OPEN_PERCENT_BUCKETS; p++) {
+            largestClusterSum[p] += other.largestClusterSum[p];
+            largestClusterSamples[p] += other.largestClusterSamples[p];
+        }
+    }
+
+    public Histogram unionsPerOpen() {
+        return unionsPerOpen;
+    }
+
+    public Histogram findDepth() {
+        return findDepth;
+    }
+
+    public Histogram clusterSizes() {
+        return clusterSizes;
+    }
+
+    public Histogram trialNanos() {
+        return trialNanos;
+    }
+
+    // mean size of the largest cluster, as a fraction of all sites, once openPercent% of the sites were open
+    // NaN when no trial got that far
+    public double largestClusterFraction(int openPercent) {
+        if (openPercent < 0 || openPercent >= OPEN_PERCENT_BUCKETS) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        return largestClusterSum[openPercent] / largestClusterSamples[openPercent];
+    }
+
+    // human readable summary of everything recorded
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %s\n", "unions/open", unionsPerOpen));
+        sb.append(String.format("%-16s %s\n", "find depth", findDepth));
+        sb.append(String.format("%-16s %s\n", "cluster size", clusterSizes));
+        sb.append(String.format("%-16s %s\n", "trial nanos", trialNanos));
+        sb.append("largest cluster by % open:");
+        for (int p = 0; p < OPEN_PERCENT_BUCKETS; p += 10) {
+            sb.append(String.format(" %d%%=%.4f", p, largestClusterFraction(p)));
+        }
+        sb.append('\n');
+        return sb.toString();
+    }
+
+    /*
+     * Histogram of non-negative longs in the spirit of HdrHistogram: values below 16 get a bucket each, every
+     * power of two above that is split into 16 sub-buckets, so any value is recorded with at most 1/16 relative
+     * error in a fixed 1024-slot array and recording is a couple of shifts and an increment.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long total;
+        private long sum;
+        private long max;
+
+        public void record(long value) {
+            if (value < 0) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            counts[bucket(value)]++;
+            total++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        public void merge(Histogram other) {
+            for (int b = 0; b < counts.length; b++) {
+                counts[b] += other.counts[b];
+            }
+            total += other.total;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        public long count() {
+            return total;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return (double) sum / total;
+        }
+
+        // smallest value v such that at least percent% of the recorded values are in v's bucket or below,
+        // reported as the lowest value of that bucket
+        public long percentile(double percent) {
+            if (percent < 0 || percent > 100) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    return lowestValue(b);
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long lowestValue(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        public String toString() {
+            return String.format("count=%d mean=%.3f p50=%d p99=%d p99.9=%d max=%d",
+                    total, mean(), percentile(50), percentile(99), percentile(99.9), max);
+        }
+    }
+
+    // run instrumented trials and print the report
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            System.err.println("Usage: java PercolationProbe <n> <trials> <seed> <threads> "
+                    + "<sample|permutation|threshold>");
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int threads = Integer.parseInt(args[3]);
+        PercolationStats.TrialMode mode = PercolationStats.TrialMode.valueOf(args[4].toUpperCase());
+
+        PercolationStats ps = PercolationStats.instrumented(n, trials, seed, threads, mode);
+        System.out.printf("%-16s %f\n", "mean", ps.mean());
+        System.out.print(ps.probe().report());
+    }
+}
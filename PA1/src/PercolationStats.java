@@ -1,95 +1,167 @@
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+
+import java.io.File;
 
 /**
  * Created by matth on 9/20/2016.
  */
 
 public class PercolationStats {
-    private static final double Z_VALUE = 1.96;
+    // how each trial picks the next site to open
+    public enum TrialMode {
+        SAMPLE,         // draw random (row, col) pairs and skip the ones that are already open
+        PERMUTATION,    // walk a reusable, lazily shuffled permutation of all sites, one draw per opened site
+        THRESHOLD       // one union-find pass over the permutation, recording the step where top meets bottom
+    }
 
-    private double[] thresholds;
-    private int trials;
+    private final RunningStats stats;
+    private PercolationProbe probe;     // only collected by instrumented()
 
     // perform trials independent experiments on an n-by-n grid
     public PercolationStats(int n, int trials) {
+        // the master seed comes from StdRandom so StdRandom.setSeed() still makes a run repeatable
+        this(n, trials, StdRandom.uniform(Integer.MAX_VALUE), 1);
+    }
 
-        // validate params
-        if (n <= 0 || trials <= 0) {
+    // perform trials independent experiments on an n-by-n grid using a fixed pool of worker threads
+    // trial t always draws from the t-th random stream split off the master seed, whichever worker runs it,
+    // so the same seed reproduces the same thresholds with any number of threads
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, seed, threads, TrialMode.SAMPLE);
+    }
+
+    // same as above, choosing how each trial generates its opening order
+    public PercolationStats(int n, int trials, long seed, int threads, TrialMode mode) {
+        this(n, trials, seed, threads, mode, null);
+    }
+
+    // same as above, but when mappedDirectory is not null every worker runs its trials on a MappedPercolation
+    // backed by a temporary file in that directory instead of on the heap
+    // the mapped backend indexes sites with longs and only supports TrialMode.SAMPLE, since the other modes
+    // keep an int permutation of every site on the heap
+    public PercolationStats(int n, int trials, long seed, int threads, TrialMode mode, File mappedDirectory) {
+        this(n, trials, seed, threads, mode, mappedDirectory, null);
+    }
+
+    // same as above, also adding every threshold to progress as soon as its trial finishes, so another thread
+    // can poll progress for a running mean and confidence interval while a long sweep is still going
+    public PercolationStats(int n, int trials, long seed, int threads, TrialMode mode, File mappedDirectory,
+                            RunningStats progress) {
+        this(run(null, n, trials, 0.0, seed, threads, mode, mappedDirectory, progress));
+    }
+
+    // perform trials independent experiments on any lattice (square, cubic, triangular, honeycomb, ...),
+    // recording the exact threshold of each trial with TrialMode.THRESHOLD
+    public PercolationStats(Lattice lattice, int trials, long seed, int threads) {
+        this(run(lattice, 0, trials, 0.0, seed, threads, TrialMode.THRESHOLD, null, null));
+    }
+
+    // wrap statistics that were already computed, e.g. by one step of a PercolationSweep
+    PercolationStats(RunningStats stats) {
+        this.stats = stats;
+    }
+
+    // keep running batches of trials until the 95% confidence half-width, Z_VALUE * stddev / sqrt(trials),
+    // is at most targetHalfWidth, giving up after maxTrials trials
+    // batches have a fixed size and trials their own streams, so the seed alone still reproduces the same run
+    public static PercolationStats untilHalfWidth(int n, double targetHalfWidth, int maxTrials, long seed,
+                                                  int threads, TrialMode mode) {
+        if (!(targetHalfWidth > 0)) {
             throw new java.lang.IllegalArgumentException();
         }
+        return new PercolationStats(run(null, n, maxTrials, targetHalfWidth, seed, threads, mode, null, null));
+    }
 
-        // store values
-        this.trials = trials;
-
-        thresholds = new double[trials];
-        int randomRow, randomCol;
+    // same as PercolationStats(n, trials, seed, threads, mode), also collecting a PercolationProbe, see probe()
+    public static PercolationStats instrumented(int n, int trials, long seed, int threads, TrialMode mode) {
+        // validate params
+        if (n <= 0 || trials <= 0 || threads <= 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
 
-        for (int i = 0; i < trials; i++) {
-            // System.out.printf("Trial %d...\n", i);
+        try (PercolationTrials engine = new PercolationTrials(n, seed, Math.min(threads, trials), mode, null, null)) {
+            engine.instrument();
+            PercolationStats ps = new PercolationStats(engine.run(n, trials, 0.0));
+            ps.probe = engine.probe();
+            return ps;
+        }
+    }
 
-            int numOpenSites = 0;
+    // run on the given lattice, or on the n-by-n square grid when lattice is null
+    // the square grid goes through PercolationTrials(n, ...) so the mapped backend never builds an int-indexed
+    // Lattice and works past n = 46340
+    private static RunningStats run(Lattice lattice, int n, int maxTrials, double targetHalfWidth, long seed,
+                                    int threads, TrialMode mode, File mappedDirectory, RunningStats progress) {
+        // validate params
+        if ((lattice == null && n <= 0) || maxTrials <= 0 || threads <= 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
 
-            Percolation p = new Percolation(n);
-            // now spawn a random site until the system percolates
-            while (!p.percolates()) {
-                randomRow = StdRandom.uniform(1, n+1);
-                randomCol = StdRandom.uniform(1, n+1);
-                if (p.isOpen(randomRow, randomCol)) {
-                    // do nothing
-                } else {
-                    p.open(randomRow, randomCol);
-                    numOpenSites++;
-                }
-            }
-            // system must be percolating now so store its threshold (# of open sites / # of total sites)
-            int numTotalSites = n*n;
-            double threshold = (double) numOpenSites / numTotalSites;
-            thresholds[i] = threshold;
-            // System.out.printf("Threshold: %f\n", threshold);
+        int workers = Math.min(threads, maxTrials);
+        try (PercolationTrials trials = (lattice != null)
+                ? new PercolationTrials(lattice, seed, workers, mode, mappedDirectory, progress)
+                : new PercolationTrials(n, seed, workers, mode, mappedDirectory, progress)) {
+            return trials.run((lattice != null) ? lattice.size() : n, maxTrials, targetHalfWidth);
         }
     }
 
     // sample mean of percolation threshold
     public double mean() {
-        return StdStats.mean(thresholds);
+        return stats.mean();
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return StdStats.stddev(thresholds);
+        return stats.stddev();
+    }
+
+    // number of trials that were run, less than requested when an adaptive run stopped early
+    public int trials() {
+        return (int) stats.count();
+    }
+
+    // instrumentation collected by instrumented(), null otherwise
+    public PercolationProbe probe() {
+        return probe;
     }
 
     // low endpoint of 95% confidence interval
     public double confidenceLo() {
-        return mean() - stdError();
+        return stats.confidenceLo();
     }
 
     // high endpoint of 95% confidence interval
     public double confidenceHi() {
-        return mean() + stdError();
-    }
-
-    private double stdError() {
-        double stdErr = stddev() / Math.sqrt(trials);
-        // z-value * stdErr = margin of error
-        return Z_VALUE * stdErr;
+        return stats.confidenceHi();
     }
 
     // test client (described below)
     public static void main(String[] args) {
 
-        int gridSize = 0, trials = 0;
-        if (args.length == 2) {
+        int gridSize = 0, trials = 0, threads = 1;
+        long seed = 0;
+        TrialMode mode = TrialMode.SAMPLE;
+        if (args.length == 2 || args.length == 4 || args.length == 5) {
             try {
                 gridSize = Integer.parseInt(args[0]);
                 trials = Integer.parseInt(args[1]);
-            } catch (NumberFormatException e) {
-                System.err.println("Argument" + args[0] + " must be an integer.");
+                if (args.length >= 4) {
+                    seed = Long.parseLong(args[2]);
+                    threads = Integer.parseInt(args[3]);
+                }
+                if (args.length == 5) {
+                    mode = TrialMode.valueOf(args[4].toUpperCase());
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException is an IllegalArgumentException, so this covers a bad mode name too
+                System.err.println("Arguments " + String.join(" ", args) + " are invalid.");
+                return;
             }
 
             // run our Monte Carlo simulation
-            PercolationStats ps = new PercolationStats(gridSize, trials);
+            PercolationStats ps = (args.length >= 4)
+                    ? new PercolationStats(gridSize, trials, seed, threads, mode)
+                    : new PercolationStats(gridSize, trials);
             double mean = ps.mean();
             double stdDev = ps.stddev();
             double confIntLow = ps.confidenceLo();
@@ -98,7 +170,7 @@ public class PercolationStats {
             System.out.printf("%-23s = %f\n", "stddev", stdDev);
             System.out.printf("%-23s = %f, %f\n", "95% confidence interval", confIntLow, confIntHigh);
         } else {
-            System.err.println("Usage: java PercolationStats <n> <trials>");
+            System.err.println("Usage: java PercolationStats <n> <trials> [<seed> <threads> [sample|permutation|threshold]]");
         }
     }
 }
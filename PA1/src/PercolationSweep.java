@@ -0,0 +1,78 @@
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.PrintStream;
+
+/*
+ * Runs percolation experiments over a range of grid sizes and writes one CSV row per size
+ *
+ * All sizes share a single PercolationTrials engine whose buffers are allocated once for the largest grid and
+ * reset in place for every other size, so a sweep allocates the same amount whether it has 1 size or 100.
+ *
+ * % java PercolationSweep 16 8192 100 42 8 threshold > sweep.csv
+ * n,trials,mean,stddev,confidence_lo,confidence_hi,seconds
+ * 16,100,0.590859,0.049497,0.581158,0.600561,0.004
+ * ...
+ */
+public class PercolationSweep {
+
+    // run trials experiments on each of the n-by-n grids in sizes, in order, and write the results to out as CSV
+    public static void sweep(int[] sizes, int trials, long seed, int threads, PercolationStats.TrialMode mode,
+                             PrintStream out) {
+        if (sizes == null || sizes.length == 0 || trials <= 0 || threads <= 0 || out == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        int maxN = 0;
+        for (int n : sizes) {
+            if (n <= 0) {
+                throw new java.lang.IllegalArgumentException();
+            }
+            maxN = Math.max(maxN, n);
+        }
+
+        out.println("n,trials,mean,stddev,confidence_lo,confidence_hi,seconds");
+        try (PercolationTrials engine = new PercolationTrials(maxN, seed, Math.min(threads, trials), mode, null,
+                null)) {
+            for (int n : sizes) {
+                Stopwatch timer = new Stopwatch();
+                PercolationStats ps = new PercolationStats(engine.run(n, trials, 0.0));
+                // always a decimal point, whatever the default locale, or the commas would split the numbers
+                out.printf(java.util.Locale.ROOT, "%d,%d,%f,%f,%f,%f,%.3f\n", n, ps.trials(), ps.mean(), ps.stddev(),
+                        ps.confidenceLo(), ps.confidenceHi(), timer.elapsedTime());
+            }
+        }
+    }
+
+    // sweep every power of two from minN to maxN
+    public static void main(String[] args) {
+        if (args.length != 6) {
+            System.err.println("Usage: java PercolationSweep <minN> <maxN> <trials> <seed> <threads> "
+                    + "<sample|permutation|threshold>");
+            return;
+        }
+
+        int minN = Integer.parseInt(args[0]);
+        int maxN = Integer.parseInt(args[1]);
+        int trials = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        int threads = Integer.parseInt(args[4]);
+        PercolationStats.TrialMode mode = PercolationStats.TrialMode.valueOf(args[5].toUpperCase());
+
+        // minN <= 0 would never grow by doubling
+        if (minN <= 0 || minN > maxN) {
+            throw new java.lang.IllegalArgumentException("need 0 < minN <= maxN: " + minN + ", " + maxN);
+        }
+
+        // stop doubling before n could overflow past Integer.MAX_VALUE
+        int count = 1;
+        for (int n = minN; n <= maxN / 2; n *= 2) {
+            count++;
+        }
+        int[] sizes = new int[count];
+        for (int i = 0, n = minN; i < count; i++, n *= 2) {
+            sizes[i] = n;
+        }
+
+        sweep(sizes, trials, seed, threads, mode, System.out);
+    }
+}
@@ -0,0 +1,421 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Monte Carlo engine behind PercolationStats
+ *
+ * Owns a fixed pool of worker threads. Each worker has its own grid and permutation buffers, allocated once for the
+ * largest lattice and reset in place before every trial, so any number of runs on lattices up to that size can be
+ * made without allocating buffers per trial or per run.
+ *
+ * Trial t of the engine's lifetime draws from the t-th random stream split off the master seed, whichever worker
+ * runs it, and starts from a freshly reset grid and identity permutation. Thresholds are added to the statistics
+ * in trial order. So the same seed and sequence of runs always reproduces the same statistics, bit for bit, with
+ * any number of threads.
+ */
+public class PercolationTrials implements AutoCloseable {
+    // trials per batch in the adaptive mode, so also the fewest trials an adaptive run makes
+    // fixed rather than scaled by the thread count, so where a run stops does not depend on the threads either
+    private static final int ADAPTIVE_BATCH = 64;
+    // trials per worker per batch in a fixed run, which has no stopping rule, so the batch size cannot change
+    // its results; it only bounds the per-batch buffers and keeps every worker busy
+    private static final int FIXED_BATCH_PER_WORKER = 16;
+
+    private final int maxN;                 // side of the largest lattice the buffers are allocated for
+    private final Lattice lattice;          // that lattice, null on the mapped backend
+    private final Worker[] workers;
+    private final ExecutorService pool;     // null when there is a single worker
+    private final RunningStats progress;    // optional, fed every threshold as soon as its trial finishes
+    private final SplittableRandom master;  // trial t's stream is the t-th split, made in trial order
+
+    // per-batch buffers, grown to the largest batch and reused by every later batch and run
+    private SplittableRandom[] streams = new SplittableRandom[0];
+    private double[] thresholds = new double[0];
+
+    // set up threads workers able to run trials on grids of up to maxN-by-maxN
+    // when mappedDirectory is not null the workers use a MappedPercolation backed by a temporary file in it,
+    // which only supports TrialMode.SAMPLE since the other modes keep an int permutation of every site on the heap
+    // the mapped backend never builds a Lattice or any other int index of the sites, so maxN may go past 46340,
+    // where n*n no longer fits in an int
+    public PercolationTrials(int maxN, long seed, int threads, PercolationStats.TrialMode mode, File mappedDirectory,
+                             RunningStats progress) {
+        this(maxN, (mappedDirectory == null) ? Lattice.square(maxN) : null, seed, threads, mode, mappedDirectory,
+                progress);
+    }
+
+    // same as above on lattices of the given kind up to the given lattice's size
+    // lattices other than the square grid have no (row, col) Percolation and only support TrialMode.THRESHOLD
+    public PercolationTrials(Lattice lattice, long seed, int threads, PercolationStats.TrialMode mode,
+                             File mappedDirectory, RunningStats progress) {
+        this((lattice != null) ? lattice.size() : 0, lattice, seed, threads, mode, mappedDirectory, progress);
+    }
+
+    // lattice may only be null on the mapped backend, which works on the maxN-by-maxN square grid
+    private PercolationTrials(int maxN, Lattice lattice, long seed, int threads, PercolationStats.TrialMode mode,
+                              File mappedDirectory, RunningStats progress) {
+        if (maxN <= 0 || (lattice == null && mappedDirectory == null) || threads <= 0 || mode == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        if (mappedDirectory != null && mode != PercolationStats.TrialMode.SAMPLE) {
+            throw new java.lang.IllegalArgumentException("the mapped backend only supports "
+                    + PercolationStats.TrialMode.SAMPLE);
+        }
+        if (lattice != null && !lattice.isSquare() && mode != PercolationStats.TrialMode.THRESHOLD) {
+            throw new java.lang.IllegalArgumentException(lattice.kind() + " lattices only support "
+                    + PercolationStats.TrialMode.THRESHOLD);
+        }
+
+        this.maxN = maxN;
+        this.lattice = lattice;
+        this.progress = progress;
+
+        master = new SplittableRandom(seed);
+        workers = new Worker[threads];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new Worker(mode, mappedDirectory);
+        }
+
+        // no point paying for a thread pool when there is only one worker
+        pool = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    // run up to maxTrials trials on the lattice of side n, checking the 95% confidence half-width after every batch
+    // and stopping once it is at most targetHalfWidth
+    // targetHalfWidth == 0 means a fixed run of exactly maxTrials
+    // either way trials run in batches of a bounded size, so memory does not grow with the number of trials
+    public RunningStats run(int n, int maxTrials, double targetHalfWidth) {
+        if (n <= 0 || n > maxN || maxTrials <= 0 || !(targetHalfWidth >= 0)) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        boolean adaptive = targetHalfWidth > 0;
+        int batchSize = adaptive ? ADAPTIVE_BATCH : Math.max(ADAPTIVE_BATCH, FIXED_BATCH_PER_WORKER * workers.length);
+        int trialsRun = 0;
+        RunningStats stats = new RunningStats();
+        do {
+            int batch = Math.min(batchSize, maxTrials - trialsRun);
+            runBatch(n, batch);
+            trialsRun += batch;
+
+            // add in trial order so the floating point results do not depend on which worker ran which trial
+            for (int t = 0; t < batch; t++) {
+                stats.add(thresholds[t]);
+            }
+        } while (trialsRun < maxTrials && !(adaptive && stats.halfWidth() <= targetHalfWidth));
+
+        return stats;
+    }
+
+    // run the next batch trials, split as evenly as possible over the workers, leaving their thresholds in
+    // thresholds[0..batch-1] in trial order
+    private void runBatch(int n, int batch) {
+        if (streams.length < batch) {
+            streams = new SplittableRandom[batch];
+            thresholds = new double[batch];
+        }
+
+        // one stream per trial, split in trial order on this thread so it cannot depend on scheduling
+        // the split is the only object a trial allocates, everything else is reset in place
+        for (int t = 0; t < batch; t++) {
+            streams[t] = master.split();
+        }
+
+        if (pool == null) {
+            workers[0].runTrials(n, streams, thresholds, 0, batch);
+            return;
+        }
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers.length);
+            int from = 0;
+            for (int w = 0; w < workers.length; w++) {
+                final Worker worker = workers[w];
+                final int first = from;
+                final int to = from + batch / workers.length + ((w < batch % workers.length) ? 1 : 0);
+                final SplittableRandom[] batchStreams = streams;
+                final double[] batchThresholds = thresholds;
+                futures.add(pool.submit(() -> worker.runTrials(n, batchStreams, batchThresholds, first, to)));
+                from = to;
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.lang.IllegalStateException("interrupted while waiting for percolation trials", e);
+        } catch (ExecutionException e) {
+            throw new java.lang.IllegalStateException("percolation trial failed", e.getCause());
+        }
+    }
+
+    // collect a PercolationProbe per worker in every following run, see probe()
+    // not available on the mapped backend
+    public void instrument() {
+        for (Worker worker : workers) {
+            worker.instrument();
+        }
+    }
+
+    // everything the workers' probes collected so far, merged in worker order, or null without instrument()
+    public PercolationProbe probe() {
+        if (workers[0].probe == null) {
+            return null;
+        }
+
+        PercolationProbe merged = new PercolationProbe();
+        for (Worker worker : workers) {
+            merged.merge(worker.probe);
+        }
+        return merged;
+    }
+
+    // stop the pool and release the workers' buffers
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        for (Worker worker : workers) {
+            worker.close();
+        }
+    }
+
+    // everything one worker thread needs to run trials, kept for the engine's lifetime so the grid and the
+    // permutation are allocated once and reused by every trial of every batch and run
+    // a batch may run on a different pool thread than the last one, submit() and get() order those accesses
+    private final class Worker {
+        private final PercolationStats.TrialMode mode;
+        private final File mappedDirectory;
+        private PercolationProbe probe;     // null unless instrumented
+
+        // allocated by the first batch, on the pool thread
+        private boolean allocated;
+        private int currentN;
+        private int[] order;
+        private Percolation percolation;
+        private GridUnionFind grid;
+        private MappedPercolation mapped;
+
+        Worker(PercolationStats.TrialMode mode, File mappedDirectory) {
+            this.mode = mode;
+            this.mappedDirectory = mappedDirectory;
+        }
+
+        // run trials from..to-1 of the batch, trial t with streams[t], storing its threshold in thresholds[t]
+        void runTrials(int n, SplittableRandom[] streams, double[] thresholds, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (!allocated) {
+                allocate();
+            }
+            if (n != currentN) {
+                resize(n);
+            }
+
+            for (int t = from; t < to; t++) {
+                SplittableRandom random = streams[t];
+                long start = 0;
+                if (probe != null) {
+                    start = System.nanoTime();
+                    probe.startTrial((grid != null) ? grid.numberOfSites() : n*n);
+                }
+
+                double threshold;
+                if (mapped != null) {
+                    mapped.reset();
+                    threshold = runMappedTrial(n, mapped, random);
+                } else if (mode == PercolationStats.TrialMode.THRESHOLD) {
+                    grid.clear();
+                    resetOrder(grid.numberOfSites());
+                    threshold = runThresholdTrial(grid.numberOfSites(), order, grid, random);
+                } else if (mode == PercolationStats.TrialMode.PERMUTATION) {
+                    percolation.reset();
+                    resetOrder(n*n);
+                    threshold = runPermutationTrial(n, order, percolation, random);
+                } else {
+                    percolation.reset();
+                    threshold = runSampleTrial(n, percolation, random);
+                }
+
+                if (probe != null) {
+                    if (grid != null) {
+                        grid.recordClusterSizes();
+                    } else {
+                        percolation.recordClusterSizes();
+                    }
+                    probe.endTrial(System.nanoTime() - start);
+                }
+
+                thresholds[t] = threshold;
+                // progress sees thresholds in completion order, which is only reproducible with one thread
+                if (progress != null) {
+                    progress.add(threshold);
+                }
+            }
+        }
+
+        void instrument() {
+            if (mappedDirectory != null) {
+                throw new java.lang.IllegalStateException("the mapped backend cannot be instrumented");
+            }
+
+            probe = new PercolationProbe();
+            attachProbe();
+        }
+
+        private void attachProbe() {
+            if (grid != null) {
+                grid.setProbe(probe);
+            }
+            if (percolation != null) {
+                percolation.setProbe(probe);
+            }
+        }
+
+        private void allocate() {
+            allocated = true;
+            currentN = maxN;
+            if (mappedDirectory != null) {
+                mapped = new MappedPercolation(maxN, mappedDirectory);
+                return;
+            }
+
+            if (mode != PercolationStats.TrialMode.SAMPLE) {
+                order = new int[lattice.numberOfSites()];
+            }
+
+            // the threshold mode drives a bare union-find, the others go through Percolation
+            if (mode == PercolationStats.TrialMode.THRESHOLD) {
+                grid = new GridUnionFind(lattice);
+            } else {
+                percolation = new Percolation(lattice.size());
+            }
+            attachProbe();
+        }
+
+        // switch every buffer to an n-by-n grid in place
+        private void resize(int n) {
+            currentN = n;
+            if (mapped != null) {
+                mapped.reset(n);
+            }
+            if (grid != null) {
+                grid.reset(n);
+            }
+            if (percolation != null) {
+                percolation.reset(n);
+            }
+        }
+
+        // the permutation buffer is shared by all of this worker's trials, but every trial starts it from the
+        // identity so its result only depends on its own random stream, not on the trials this worker ran before
+        private void resetOrder(int numSites) {
+            for (int site = 0; site < numSites; site++) {
+                order[site] = site;
+            }
+        }
+
+        void close() {
+            if (mapped == null) {
+                return;
+            }
+            try {
+                mapped.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // open random sites until the system percolates and return the fraction of open sites
+    // same draws as runSampleTrial, so a given random stream yields the same threshold on either backend
+    private static double runMappedTrial(int n, MappedPercolation p, SplittableRandom random) {
+        long numOpenSites = 0;
+        int randomRow, randomCol;
+
+        while (!p.percolates()) {
+            randomRow = random.nextInt(n) + 1;
+            randomCol = random.nextInt(n) + 1;
+            if (!p.isOpen(randomRow, randomCol)) {
+                p.open(randomRow, randomCol);
+                numOpenSites++;
+            }
+        }
+        long numTotalSites = (long) n * n;
+        return (double) numOpenSites / numTotalSites;
+    }
+
+    // open random sites until the system percolates and return the fraction of open sites
+    // expects p to have all sites blocked
+    private static double runSampleTrial(int n, Percolation p, SplittableRandom random) {
+        int numOpenSites = 0;
+        int randomRow, randomCol;
+
+        // now spawn a random site until the system percolates
+        while (!p.percolates()) {
+            randomRow = random.nextInt(n) + 1;
+            randomCol = random.nextInt(n) + 1;
+            if (p.isOpen(randomRow, randomCol)) {
+                // do nothing
+            } else {
+                p.open(randomRow, randomCol);
+                numOpenSites++;
+            }
+        }
+        // system must be percolating now so store its threshold (# of open sites / # of total sites)
+        int numTotalSites = n*n;
+        return (double) numOpenSites / numTotalSites;
+    }
+
+    // open sites in the order of a lazily shuffled permutation until the system percolates
+    // every step is one Fisher-Yates swap, so each opened site costs exactly one random draw, and the site is
+    // opened by its flat index: a permutation entry is always valid and closed, so there is nothing to check
+    // expects p to have all sites blocked
+    private static double runPermutationTrial(int n, int[] order, Percolation p, SplittableRandom random) {
+        int numOpenSites = 0;
+        int numTotalSites = n*n;
+
+        while (!p.percolates()) {
+            // pick the next site uniformly among the ones that are still closed
+            int swap = numOpenSites + random.nextInt(numTotalSites - numOpenSites);
+            int site = order[swap];
+            order[swap] = order[numOpenSites];
+            order[numOpenSites] = site;
+
+            p.openSite(site);
+            numOpenSites++;
+        }
+        return (double) numOpenSites / numTotalSites;
+    }
+
+    // open sites in the order of a lazily shuffled permutation in a single union-find pass
+    // works on any lattice, the first numTotalSites entries of order must be a permutation of its sites
+    // the union-find roots carry whether their component touches the top and/or bottom row, so the step at
+    // which the system percolates falls out of the unions themselves instead of a connectivity query
+    // expects grid to have all sites closed
+    private static double runThresholdTrial(int numTotalSites, int[] order, GridUnionFind grid,
+                                            SplittableRandom random) {
+        for (int step = 0; step < numTotalSites; step++) {
+            int swap = step + random.nextInt(numTotalSites - step);
+            int site = order[swap];
+            order[swap] = order[step];
+            order[step] = site;
+
+            grid.open(site);
+            if (grid.percolates()) {
+                return (double) (step + 1) / numTotalSites;
+            }
+        }
+
+        // a fully open grid always percolates
+        throw new java.lang.IllegalStateException();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Streaming mean / sample standard deviation / 95% confidence interval (Welford's algorithm)
+ *
+ * Takes O(1) memory no matter how many values are added and answers every query in O(1). Two accumulators can be
+ * merged (Chan et al.'s parallel update), so each worker thread can keep its own and combine them at the end.
+ * All methods are synchronized so another thread can poll a running accumulator while values are still coming in.
+ */
+public class RunningStats {
+    private static final double Z_VALUE = 1.96;
+
+    private long count;
+    private double mean;
+    private double m2; // sum of squared differences from the current mean
+
+    // add one value
+    public synchronized void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    // add every value seen by other, as if they had been added to this accumulator one by one
+    public void merge(RunningStats other) {
+        long otherCount;
+        double otherMean, otherM2;
+        // take a consistent snapshot of other without holding both locks at once
+        synchronized (other) {
+            otherCount = other.count;
+            otherMean = other.mean;
+            otherM2 = other.m2;
+        }
+
+        synchronized (this) {
+            if (otherCount == 0) {
+                return;
+            }
+            long total = count + otherCount;
+            double delta = otherMean - mean;
+            mean += delta * otherCount / total;
+            m2 += otherM2 + delta * delta * ((double) count * otherCount / total);
+            count = total;
+        }
+    }
+
+    // number of values added so far
+    public synchronized long count() {
+        return count;
+    }
+
+    // sample mean, NaN when empty
+    public synchronized double mean() {
+        return (count == 0) ? Double.NaN : mean;
+    }
+
+    // sample variance, NaN with fewer than 2 values
+    public synchronized double variance() {
+        // spelled out: with no values m2 / (count - 1) would be 0 / -1 = -0.0, not NaN
+        if (count < 2) {
+            return Double.NaN;
+        }
+        return m2 / (count - 1);
+    }
+
+    // sample standard deviation, NaN with fewer than 2 values
+    public synchronized double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    // half-width of the 95% confidence interval around the mean
+    public synchronized double halfWidth() {
+        return Z_VALUE * stddev() / Math.sqrt(count);
+    }
+
+    // low endpoint of 95% confidence interval
+    public synchronized double confidenceLo() {
+        return mean() - halfWidth();
+    }
+
+    // high endpoint of 95% confidence interval
+    public synchronized double confidenceHi() {
+        return mean() + halfWidth();
+    }
+}
@@ -0,0 +1,305 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Thread-safe randomized queue, striped over independently locked sub-queues
+ *
+ * Each stripe is a packed resizing array like RandomizedQueue's, behind its own lock. A thread enqueues into its
+ * home stripe (threads are given home stripes round-robin) and moves on to another one when the home stripe's
+ * lock is taken, so producers rarely wait for each other. Random numbers come from ThreadLocalRandom, never from
+ * the shared, synchronized StdRandom.
+ *
+ * Uniformity: dequeue() and sample() read every stripe's size, pick a stripe with probability proportional to its
+ * size, then an item uniformly within it. When no other thread is changing the queue that is exactly uniform over
+ * all items, however unevenly they are spread over the stripes. While other threads enqueue and dequeue, the sizes
+ * are read one after the other rather than atomically, so an item's probability is off by about the number of
+ * operations in flight divided by size(); each dequeue still removes exactly one item that was on the queue, and
+ * no item is returned twice or lost. With an empty or nearly empty queue under heavy contention, expect no more
+ * than "a random item, roughly uniformly".
+ *
+ * size() and isEmpty() are sums over the stripes, exact only when the queue is quiet. dequeue() and sample() only
+ * throw NoSuchElementException after seeing every stripe empty with all their locks held. The iterator walks a
+ * snapshot taken one stripe at a time, in random order.
+ */
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+
+    private static final int STARTING_ARRAY_SIZE = 2;
+
+    // home stripe of each thread, handed out round-robin
+    private static final AtomicInteger NEXT_HOME = new AtomicInteger();
+    private static final ThreadLocal<Integer> HOME = ThreadLocal.withInitial(NEXT_HOME::getAndIncrement);
+
+    private final Stripe<Item>[] stripes;
+
+    // one sub-queue; extending the lock saves an object and an indirection per stripe
+    private static final class Stripe<Item> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        private Item[] array = (Item[]) new Object[STARTING_ARRAY_SIZE];
+        private volatile int numItems;  // written under the lock, read without it to weigh the stripes
+
+        // add the item, caller holds the lock
+        void add(Item item) {
+            if (numItems == array.length) {
+                resize(2 * array.length);
+            }
+            array[numItems] = item;
+            numItems = numItems + 1;
+        }
+
+        // remove and return the item at index i, moving the last item into its slot, caller holds the lock
+        Item remove(int i) {
+            int last = numItems - 1;
+            Item item = array[i];
+            array[i] = array[last];
+            array[last] = null; // avoid loitering
+            numItems = last;
+            if (last > 0 && last == array.length / 4) {
+                resize(array.length / 2);
+            }
+            return item;
+        }
+
+        private void resize(int capacity) {
+            Item[] resized = (Item[]) new Object[capacity];
+            System.arraycopy(array, 0, resized, 0, numItems);
+            array = resized;
+        }
+    }
+
+    // construct an empty queue with two stripes per available processor
+    public ConcurrentRandomizedQueue() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    // construct an empty queue with the given number of stripes
+    public ConcurrentRandomizedQueue(int numStripes) {
+        if (numStripes <= 0) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        stripes = newStripes(numStripes);
+        for (int s = 0; s < numStripes; s++) {
+            stripes[s] = new Stripe<>();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <Item> Stripe<Item>[] newStripes(int n) {
+        return (Stripe<Item>[]) new Stripe[n];
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // return the number of items on the queue
+    public int size() {
+        int size = 0;
+        for (Stripe<Item> stripe : stripes) {
+            size += stripe.numItems;
+        }
+        return size;
+    }
+
+    // add the item
+    public void enqueue(Item item) {
+        if (item == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        // home stripe first, then any stripe that is free right now, then wait for the home stripe
+        int home = (HOME.get() & Integer.MAX_VALUE) % stripes.length;
+        for (int attempt = 0; attempt < stripes.length; attempt++) {
+            Stripe<Item> stripe = stripes[(home + attempt) % stripes.length];
+            if (stripe.tryLock()) {
+                try {
+                    stripe.add(item);
+                    return;
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+
+        Stripe<Item> stripe = stripes[home];
+        stripe.lock();
+        try {
+            stripe.add(item);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    // remove and return a random item
+    public Item dequeue() {
+        return take(true);
+    }
+
+    // return (but do not remove) a random item
+    public Item sample() {
+        return take(false);
+    }
+
+    // pick a stripe in proportion to its size and an item uniformly within it, removing it if asked to
+    private Item take(boolean remove) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int total = size();
+            if (total == 0) {
+                if (isEmptyWhileLocked()) {
+                    throw new java.util.NoSuchElementException();
+                }
+                // an item moved in behind the unlocked read of the sizes, draw again
+                continue;
+            }
+
+            int target = random.nextInt(total);
+            int s = 0;
+            int size = stripes[0].numItems;
+            while (s < stripes.length - 1 && target >= size) {
+                target -= size;
+                size = stripes[++s].numItems;
+            }
+
+            Stripe<Item> stripe = stripes[s];
+            stripe.lock();
+            try {
+                int numItems = stripe.numItems;
+                if (numItems == 0) {
+                    // emptied by other threads since the sizes were read, draw again
+                    continue;
+                }
+                int i = random.nextInt(numItems);
+                return remove ? stripe.remove(i) : stripe.array[i];
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    // is every stripe empty at one and the same moment? takes every lock, in index order; no other method holds
+    // more than one lock, so this cannot deadlock, but it stops the whole queue and is only for when the unlocked
+    // sizes already say empty
+    private boolean isEmptyWhileLocked() {
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                stripes[locked].lock();
+                if (stripes[locked].numItems > 0) {
+                    // unlocked below, together with the ones before it
+                    locked++;
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            for (int s = 0; s < locked; s++) {
+                stripes[s].unlock();
+            }
+        }
+    }
+
+    // return an independent iterator over a snapshot of the items, in random order
+    public Iterator<Item> iterator() {
+        Object[] snapshot = new Object[Math.max(16, size())];
+        int n = 0;
+        for (Stripe<Item> stripe : stripes) {
+            stripe.lock();
+            try {
+                if (n + stripe.numItems > snapshot.length) {
+                    snapshot = java.util.Arrays.copyOf(snapshot, 2 * (n + stripe.numItems));
+                }
+                System.arraycopy(stripe.array, 0, snapshot, n, stripe.numItems);
+                n += stripe.numItems;
+            } finally {
+                stripe.unlock();
+            }
+        }
+
+        final Object[] items = snapshot;
+        final int numItems = n;
+        return new Iterator<Item>() {
+            private int currentIndex = 0;
+
+            public boolean hasNext() {
+                return currentIndex < numItems;
+            }
+
+            public Item next() {
+                if (!hasNext()) {
+                    throw new java.util.NoSuchElementException();
+                }
+                // one Fisher-Yates step per item
+                int j = currentIndex + ThreadLocalRandom.current().nextInt(numItems - currentIndex);
+                Object item = items[j];
+                items[j] = items[currentIndex];
+                items[currentIndex++] = null;
+                return (Item) item;
+            }
+        };
+    }
+
+    // unit testing (optional)
+    public static void main(String[] args) throws InterruptedException {
+        // every item is dequeued exactly once while threads enqueue and dequeue concurrently
+        final int threads = 8;
+        final int perThread = 200000;
+        final ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<>(4);
+        final AtomicIntegerArray taken = new AtomicIntegerArray(threads * perThread);
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int first = t * perThread;
+            pool[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    queue.enqueue(first + i);
+                    if ((i & 1) == 1) {
+                        taken.incrementAndGet(queue.dequeue());
+                    }
+                }
+            });
+            pool[t].start();
+        }
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        assert queue.size() == threads * perThread / 2;
+        while (!queue.isEmpty()) {
+            taken.incrementAndGet(queue.dequeue());
+        }
+        for (int i = 0; i < threads * perThread; i++) {
+            assert taken.get(i) == 1 : "item " + i + " taken " + taken.get(i) + " times";
+        }
+
+        // uniform even when the stripes are unbalanced: two threads enqueue 2 and 8 items, usually into different stripes
+        int rounds = 20000;
+        int[] counts = new int[10];
+        for (int round = 0; round < rounds; round++) {
+            final ConcurrentRandomizedQueue<Integer> small = new ConcurrentRandomizedQueue<>(2);
+            Thread few = new Thread(() -> {
+                small.enqueue(0);
+                small.enqueue(1);
+            });
+            Thread many = new Thread(() -> {
+                for (int i = 2; i < 10; i++) {
+                    small.enqueue(i);
+                }
+            });
+            few.start();
+            many.start();
+            few.join();
+            many.join();
+            counts[small.dequeue()]++;
+        }
+        for (int count : counts) {
+            double expected = rounds / 10.0;
+            assert Math.abs(count - expected) < 5 * Math.sqrt(expected) : java.util.Arrays.toString(counts);
+        }
+        StdOut.println("concurrent enqueue/dequeue and uniformity ok");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Throughput of ConcurrentRandomizedQueue against one RandomizedQueue shared behind a lock
+ *
+ * Every thread first enqueues PREFILL items, then alternates enqueue and dequeue, so the queue stays about the same
+ * size while all threads hit it at once. The result is operations per second for 1, 2, 4, ... threads.
+ *
+ * % java ConcurrentRandomizedQueueBenchmark 32 1000000
+ */
+public class ConcurrentRandomizedQueueBenchmark {
+
+    private static final int PREFILL = 1024;
+
+    // the operations every worker runs against a queue
+    private interface Queue {
+        void enqueue(Integer item);
+
+        Integer dequeue();
+    }
+
+    // run opsPerThread operations on each of threads workers against queue, return seconds
+    private static double time(int threads, int opsPerThread, Queue queue) throws InterruptedException {
+        return ThreadBenchmark.time(threads, id -> {
+            for (int i = 0; i < PREFILL; i++) {
+                queue.enqueue(i);
+            }
+            long sum = 0;
+            for (int i = 0; i < opsPerThread / 2; i++) {
+                queue.enqueue(i);
+                sum += queue.dequeue();
+            }
+            return sum;
+        });
+    }
+
+    private static double striped(int threads, int opsPerThread) throws InterruptedException {
+        final ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<>();
+        return time(threads, opsPerThread, new Queue() {
+            public void enqueue(Integer item) {
+                queue.enqueue(item);
+            }
+
+            public Integer dequeue() {
+                return queue.dequeue();
+            }
+        });
+    }
+
+    private static double locked(int threads, int opsPerThread) throws InterruptedException {
+        final RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+        return time(threads, opsPerThread, new Queue() {
+            public void enqueue(Integer item) {
+                synchronized (queue) {
+                    queue.enqueue(item);
+                }
+            }
+
+            public Integer dequeue() {
+                synchronized (queue) {
+                    return queue.dequeue();
+                }
+            }
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 2) {
+            System.err.println("Usage: java ConcurrentRandomizedQueueBenchmark <maxThreads> <opsPerThread>");
+            return;
+        }
+
+        int maxThreads = Integer.parseInt(args[0]);
+        int opsPerThread = Integer.parseInt(args[1]);
+
+        // warm up both paths so the first row is not measuring the interpreter
+        striped(1, opsPerThread);
+        locked(1, opsPerThread);
+
+        System.out.printf("%8s %16s %22s\n", "threads", "striped ops/s", "synchronized ops/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double ops = (double) threads * (opsPerThread + PREFILL);
+            System.out.printf("%8d %16.0f %22.0f\n", threads,
+                    ops / striped(threads, opsPerThread), ops / locked(threads, opsPerThread));
+        }
+    }
+}
@@ -1,61 +1,45 @@
 import edu.princeton.cs.algs4.StdOut;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /*
- * Linked list implementation of a double-ended queue
+ * Resizing circular array implementation of a double-ended queue
+ *
+ * Items live in a ring whose capacity is always a power of two, so wrapping an index around is a mask instead of a
+ * branch or a modulo. head is the slot of the first item and the items occupy the next size() slots, wrapping
+ * around the end of the array. The ring doubles when full and halves when a quarter full (never below
+ * MIN_CAPACITY), so every add and remove is amortized O(1), there is no per-item node to allocate or collect, and
+ * iterating walks contiguous memory.
+ *
+ * Iterators, forEach() and spliterator() are fail-fast: adding or removing while a traversal is under way makes it
+ * throw ConcurrentModificationException rather than return a mix of old and new items.
  */
 public class Deque<Item> implements Iterable<Item> {
 
-    private Node head;
-    private Node tail;
-    private int numOfItems;
-
-    private class Node {
-        private Item item;
-        private Node previous;
-        private Node next;
-
-        public Node(Item i) {
-            setItem(i);
-            setPrevious(null);
-            setNext(null);
-        }
-
-        Item getItem() {
-            return item;
-        }
-
-        void setItem(Item item) {
-            this.item = item;
-        }
-
-        Node getPrevious() {
-            return previous;
-        }
+    private static final int MIN_CAPACITY = 8;
 
-        void setPrevious(Node previous) {
-            this.previous = previous;
-        }
-
-        Node getNext() {
-            return next;
-        }
-
-        void setNext(Node next) {
-            this.next = next;
-        }
-    }
+    private Item[] items;
+    private int head;
+    private int numOfItems;
+    private int modCount; // number of adds and removes, for fail-fast traversal
 
     // construct an empty deque
     public Deque() {
-        head = null;
-        tail = null;
+        items = newArray(MIN_CAPACITY);
+        head = 0;
         numOfItems = 0;
     }
 
+    @SuppressWarnings("unchecked")
+    private static <Item> Item[] newArray(int capacity) {
+        return (Item[]) new Object[capacity];
+    }
+
     // is the deque empty?
     public boolean isEmpty() {
-        return (head == null && tail == null);
+        return numOfItems == 0;
     }
 
     // return the number of items on the deque
@@ -70,19 +54,14 @@ public class Deque<Item> implements Iterable<Item> {
             throw new java.lang.IllegalArgumentException();
         }
 
-        if (head == null) {
-            // first item in our deque
-            tail = new Node(item);
-            head = tail;
-        } else {
-            // second or higher item in our deque
-            Node newHead = new Node(item);
-            newHead.setNext(head);
-            head.setPrevious(newHead);
-            head = newHead;
+        if (numOfItems == items.length) {
+            resize(2 * items.length);
         }
 
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
         numOfItems++;
+        modCount++;
     }
 
     // add the item to the end
@@ -92,104 +71,183 @@ public class Deque<Item> implements Iterable<Item> {
             throw new java.lang.IllegalArgumentException();
         }
 
-        if (tail == null) {
-            // first item in our deque
-            head = new Node(item);
-            tail = head;
-        } else if (tail.getPrevious() == null) {
-            // second item in our deque
-            Node newTail = new Node(item);
-            newTail.setPrevious(head);
-            head.setNext(newTail);
-            tail = newTail;
-        } else {
-            // third or higher item in our deque
-            Node newTail = new Node(item);
-            newTail.setPrevious(tail);
-            tail.setNext(newTail);
-            tail = newTail;
+        if (numOfItems == items.length) {
+            resize(2 * items.length);
         }
 
+        items[(head + numOfItems) & (items.length - 1)] = item;
         numOfItems++;
-
+        modCount++;
     }
 
     // remove and return the item from the front
     public Item removeFirst() {
-        // 0-item scenario
-        if (head == null) {
+        if (numOfItems == 0) {
             // empty queue
             throw new java.util.NoSuchElementException();
         }
 
-        Item removedHead = head.getItem();
-
-        // 1-item scenario
-        if (head == tail) {
-            head = tail = null;
-        } else if (head.getNext() == tail) {
-            // 2-item scenario
-            tail.setPrevious(null);
-            head = tail;
-        } else {
-            // 3-item scenario
-            Node newHead = head.getNext();
-            newHead.setPrevious(null);
-            head = newHead;
-        }
-
+        Item removedHead = items[head];
+        items[head] = null; // avoid loitering
+        head = (head + 1) & (items.length - 1);
         numOfItems--;
+        modCount++;
 
+        shrinkIfSparse();
         return removedHead;
     }
 
     // remove and return the item from the end
     public Item removeLast() {
-        if (head == null) {
+        if (numOfItems == 0) {
             // empty queue
             throw new java.util.NoSuchElementException();
         }
 
-        Item removedTail = tail.getItem();
-
-        // 1-item scenario
-        if (head == tail) {
-            head = tail = null;
-        } else if (tail.getPrevious() == head) {
-            // 2-item scenario
-            head.setNext(null);
-            tail =  head;
-        } else {
-            // 3-item scenario
-            Node newTail = tail.getPrevious();
-            newTail.setNext(null);
-            tail = newTail;
-        }
-
+        int last = (head + numOfItems - 1) & (items.length - 1);
+        Item removedTail = items[last];
+        items[last] = null; // avoid loitering
         numOfItems--;
+        modCount++;
 
+        shrinkIfSparse();
         return removedTail;
     }
 
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && numOfItems <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // move the items to a new ring of the given capacity, starting at slot 0
+    private void resize(int capacity) {
+        Item[] resized = newArray(capacity);
+        // at most two contiguous runs: head..end of the array, then the wrapped part from 0
+        int firstRun = Math.min(numOfItems, items.length - head);
+        System.arraycopy(items, head, resized, 0, firstRun);
+        System.arraycopy(items, 0, resized, firstRun, numOfItems - firstRun);
+        items = resized;
+        head = 0;
+    }
+
     // return an iterator over items in order from front to end
     public Iterator<Item> iterator() {
-        return new ListIterator();
+        return new ArrayIterator();
     }
 
-    private class ListIterator implements Iterator<Item> {
-        private Node current = head;
+    private class ArrayIterator implements Iterator<Item> {
+        private int offset = 0;
+        private final int expectedModCount = modCount;
 
         public boolean hasNext() {
-            return current != null;
+            return offset < numOfItems;
         }
 
         public Item next() {
-            if (current == null) {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (offset >= numOfItems) {
                 throw new java.util.NoSuchElementException();
             }
-            Item item = current.getItem();
-            current = current.getNext();
-            return item;
+            return items[(head + offset++) & (items.length - 1)];
+        }
+    }
+
+    // perform the action on every item in order from front to end, without allocating an iterator
+    @Override
+    public void forEach(Consumer<? super Item> action) {
+        if (action == null) {
+            throw new java.lang.NullPointerException();
+        }
+
+        int expectedModCount = modCount;
+        int mask = items.length - 1;
+        for (int offset = 0; offset < numOfItems && modCount == expectedModCount; offset++) {
+            action.accept(items[(head + offset) & mask]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    // spliterator over items in order from front to end, splitting by halving its range of positions,
+    // so StreamSupport.stream(deque.spliterator(), true) can process the deque in parallel
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new RingSpliterator(0, -1, 0);
+    }
+
+    // covers positions index..fence-1 counted from head; binds to the deque's size at the first traversal,
+    // estimate or split, so items added between creating and using it are included
+    private class RingSpliterator implements Spliterator<Item> {
+        private int index;
+        private int fence;              // -1 until bound
+        private int expectedModCount;
+
+        RingSpliterator(int index, int fence, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                fence = numOfItems;
+                expectedModCount = modCount;
+            }
+            return fence;
+        }
+
+        public Spliterator<Item> trySplit() {
+            int hi = getFence();
+            int mid = (index + hi) >>> 1;
+            if (index >= mid) {
+                return null;
+            }
+            Spliterator<Item> prefix = new RingSpliterator(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new java.lang.NullPointerException();
+            }
+            if (index >= getFence()) {
+                return false;
+            }
+            Item item = items[(head + index++) & (items.length - 1)];
+            action.accept(item);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new java.lang.NullPointerException();
+            }
+            int hi = getFence();
+            Item[] a = items;
+            int h = head;
+            int mask = a.length - 1;
+            for (; index < hi; index++) {
+                action.accept(a[(h + index) & mask]);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
         }
     }
 
@@ -227,5 +285,71 @@ public class Deque<Item> implements Iterable<Item> {
             deque2.print();
         }
 
+        StdOut.println("--------------\n");
+
+        // mixed operations against java.util.ArrayDeque, crossing every resize and wrap-around
+        java.util.Random random = new java.util.Random(42);
+        Deque<Integer> deque3 = new Deque<>();
+        java.util.ArrayDeque<Integer> reference = new java.util.ArrayDeque<>();
+        for (int i = 0; i < 200000; i++) {
+            // mostly adds for the first half, mostly removes for the second, so the ring both grows and shrinks
+            int op = (i < 100000) ? random.nextInt(6) : 1 + random.nextInt(3);
+            if (op == 0 || op == 4) {
+                deque3.addFirst(i);
+                reference.addFirst(i);
+            } else if (op == 1 || op == 5) {
+                deque3.addLast(i);
+                reference.addLast(i);
+            } else if (!reference.isEmpty()) {
+                Integer expected = (op == 2) ? reference.removeFirst() : reference.removeLast();
+                Integer actual = (op == 2) ? deque3.removeFirst() : deque3.removeLast();
+                assert expected.equals(actual);
+            }
+            assert deque3.size() == reference.size();
+        }
+        Iterator<Integer> expected = reference.iterator();
+        for (Integer item : deque3) {
+            assert item.equals(expected.next());
+        }
+        assert !expected.hasNext();
+        StdOut.println("random operations ok, " + deque3.size() + " items left");
+
+        // fail-fast traversal
+        boolean thrown = false;
+        try {
+            for (Integer item : deque3) {
+                deque3.addLast(item);
+            }
+        } catch (ConcurrentModificationException e) {
+            thrown = true;
+        }
+        assert thrown;
+        thrown = false;
+        try {
+            deque3.forEach(item -> deque3.removeFirst());
+        } catch (ConcurrentModificationException e) {
+            thrown = true;
+        }
+        assert thrown;
+
+        // forEach and sequential and parallel streams see the items in order
+        Deque<Integer> deque4 = new Deque<>();
+        for (int i = 0; i < 100000; i++) {
+            deque4.addFirst(-i);   // wraps around the end of the ring
+            deque4.addLast(i);
+        }
+        long[] sum = new long[1];
+        deque4.forEach(item -> sum[0] += item);
+        assert sum[0] == 0;
+        Object[] ordered = java.util.stream.StreamSupport.stream(deque4.spliterator(), true).toArray();
+        assert ordered.length == deque4.size();
+        Iterator<Integer> it = deque4.iterator();
+        for (Object item : ordered) {
+            assert item.equals(it.next());
+        }
+        assert java.util.stream.StreamSupport.stream(deque4.spliterator(), true)
+                .mapToLong(Integer::longValue).map(Math::abs).sum() == 2L * (99999L * 100000 / 2);
+        StdOut.println("fail-fast iteration, forEach and spliterator ok");
+
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.PrimitiveIterator;
+
+/*
+ * Double-ended queue of ints, the same circular array as Deque but over an int[]
+ *
+ * Nothing is boxed: adds and removes touch the ring only, so once it has grown to its working size a stream of
+ * operations allocates nothing. The iterator is a PrimitiveIterator.OfInt, use nextInt() to read without boxing.
+ */
+public class IntDeque implements Iterable<Integer> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] items;
+    private int head;
+    private int numOfItems;
+
+    // construct an empty deque
+    public IntDeque() {
+        items = new int[MIN_CAPACITY];
+        head = 0;
+        numOfItems = 0;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return numOfItems == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return numOfItems;
+    }
+
+    // add the item to the front
+    public void addFirst(int item) {
+        if (numOfItems == items.length) {
+            resize(2 * items.length);
+        }
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        numOfItems++;
+    }
+
+    // add the item to the end
+    public void addLast(int item) {
+        if (numOfItems == items.length) {
+            resize(2 * items.length);
+        }
+
+        items[(head + numOfItems) & (items.length - 1)] = item;
+        numOfItems++;
+    }
+
+    // remove and return the item from the front
+    public int removeFirst() {
+        if (numOfItems == 0) {
+            // empty queue
+            throw new java.util.NoSuchElementException();
+        }
+
+        int removedHead = items[head];
+        head = (head + 1) & (items.length - 1);
+        numOfItems--;
+
+        shrinkIfSparse();
+        return removedHead;
+    }
+
+    // remove and return the item from the end
+    public int removeLast() {
+        if (numOfItems == 0) {
+            // empty queue
+            throw new java.util.NoSuchElementException();
+        }
+
+        int removedTail = items[(head + numOfItems - 1) & (items.length - 1)];
+        numOfItems--;
+
+        shrinkIfSparse();
+        return removedTail;
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && numOfItems <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // move the items to a new ring of the given capacity, starting at slot 0
+    private void resize(int capacity) {
+        int[] resized = new int[capacity];
+        int firstRun = Math.min(numOfItems, items.length - head);
+        System.arraycopy(items, head, resized, 0, firstRun);
+        System.arraycopy(items, 0, resized, firstRun, numOfItems - firstRun);
+        items = resized;
+        head = 0;
+    }
+
+    // return an iterator over items in order from front to end
+    public PrimitiveIterator.OfInt iterator() {
+        return new ArrayIterator();
+    }
+
+    private class ArrayIterator implements PrimitiveIterator.OfInt {
+        private int offset = 0;
+
+        public boolean hasNext() {
+            return offset < numOfItems;
+        }
+
+        public int nextInt() {
+            if (offset >= numOfItems) {
+                throw new java.util.NoSuchElementException();
+            }
+            return items[(head + offset++) & (items.length - 1)];
+        }
+    }
+
+    // unit testing (optional)
+    public static void main(String[] args) {
+        // mixed operations against Deque<Integer>, crossing every resize and wrap-around
+        java.util.Random random = new java.util.Random(42);
+        IntDeque deque = new IntDeque();
+        Deque<Integer> reference = new Deque<>();
+        for (int i = 0; i < 200000; i++) {
+            int op = (i < 100000) ? random.nextInt(6) : 1 + random.nextInt(3);
+            if (op == 0 || op == 4) {
+                deque.addFirst(i);
+                reference.addFirst(i);
+            } else if (op == 1 || op == 5) {
+                deque.addLast(i);
+                reference.addLast(i);
+            } else if (!reference.isEmpty()) {
+                int expected = (op == 2) ? reference.removeFirst() : reference.removeLast();
+                int actual = (op == 2) ? deque.removeFirst() : deque.removeLast();
+                assert expected == actual;
+            }
+            assert deque.size() == reference.size();
+        }
+
+        PrimitiveIterator.OfInt it = deque.iterator();
+        for (int expected : reference) {
+            assert it.nextInt() == expected;
+        }
+        assert !it.hasNext();
+        StdOut.println("random operations ok, " + deque.size() + " items left");
+    }
+}
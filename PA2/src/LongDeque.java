@@ -0,0 +1,152 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.PrimitiveIterator;
+
+/*
+ * Double-ended queue of longs, the same circular array as Deque but over a long[]
+ *
+ * Nothing is boxed: adds and removes touch the ring only, so once it has grown to its working size a stream of
+ * operations allocates nothing. The iterator is a PrimitiveIterator.OfLong, use nextLong() to read without boxing.
+ */
+public class LongDeque implements Iterable<Long> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] items;
+    private int head;
+    private int numOfItems;
+
+    // construct an empty deque
+    public LongDeque() {
+        items = new long[MIN_CAPACITY];
+        head = 0;
+        numOfItems = 0;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return numOfItems == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return numOfItems;
+    }
+
+    // add the item to the front
+    public void addFirst(long item) {
+        if (numOfItems == items.length) {
+            resize(2 * items.length);
+        }
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        numOfItems++;
+    }
+
+    // add the item to the end
+    public void addLast(long item) {
+        if (numOfItems == items.length) {
+            resize(2 * items.length);
+        }
+
+        items[(head + numOfItems) & (items.length - 1)] = item;
+        numOfItems++;
+    }
+
+    // remove and return the item from the front
+    public long removeFirst() {
+        if (numOfItems == 0) {
+            // empty queue
+            throw new java.util.NoSuchElementException();
+        }
+
+        long removedHead = items[head];
+        head = (head + 1) & (items.length - 1);
+        numOfItems--;
+
+        shrinkIfSparse();
+        return removedHead;
+    }
+
+    // remove and return the item from the end
+    public long removeLast() {
+        if (numOfItems == 0) {
+            // empty queue
+            throw new java.util.NoSuchElementException();
+        }
+
+        long removedTail = items[(head + numOfItems - 1) & (items.length - 1)];
+        numOfItems--;
+
+        shrinkIfSparse();
+        return removedTail;
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && numOfItems <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // move the items to a new ring of the given capacity, starting at slot 0
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        int firstRun = Math.min(numOfItems, items.length - head);
+        System.arraycopy(items, head, resized, 0, firstRun);
+        System.arraycopy(items, 0, resized, firstRun, numOfItems - firstRun);
+        items = resized;
+        head = 0;
+    }
+
+    // return an iterator over items in order from front to end
+    public PrimitiveIterator.OfLong iterator() {
+        return new ArrayIterator();
+    }
+
+    private class ArrayIterator implements PrimitiveIterator.OfLong {
+        private int offset = 0;
+
+        public boolean hasNext() {
+            return offset < numOfItems;
+        }
+
+        public long nextLong() {
+            if (offset >= numOfItems) {
+                throw new java.util.NoSuchElementException();
+            }
+            return items[(head + offset++) & (items.length - 1)];
+        }
+    }
+
+    // unit testing (optional)
+    public static void main(String[] args) {
+        // mixed operations against Deque<Long> with values above 2^32, crossing every resize and wrap-around
+        java.util.Random random = new java.util.Random(42);
+        LongDeque deque = new LongDeque();
+        Deque<Long> reference = new Deque<>();
+        for (int i = 0; i < 200000; i++) {
+            int op = (i < 100000) ? random.nextInt(6) : 1 + random.nextInt(3);
+            if (op == 0 || op == 4) {
+                long item = (long) i << 32 | i;
+                deque.addFirst(item);
+                reference.addFirst(item);
+            } else if (op == 1 || op == 5) {
+                long item = (long) i << 32 | i;
+                deque.addLast(item);
+                reference.addLast(item);
+            } else if (!reference.isEmpty()) {
+                long expected = (op == 2) ? reference.removeFirst() : reference.removeLast();
+                long actual = (op == 2) ? deque.removeFirst() : deque.removeLast();
+                assert expected == actual;
+            }
+            assert deque.size() == reference.size();
+        }
+
+        PrimitiveIterator.OfLong it = deque.iterator();
+        for (long expected : reference) {
+            assert it.nextLong() == expected;
+        }
+        assert !it.hasNext();
+        StdOut.println("random operations ok, " + deque.size() + " items left");
+    }
+}
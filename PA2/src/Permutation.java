@@ -1,23 +1,146 @@
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.Iterator;
 
 public class Permutation {
-    public static void main(String[] args) {
 
-        int numOfItemsToPrint = Integer.parseInt(args[0]);
+    // items that can also be stepped over without producing them
+    interface Source<Item> extends Iterator<Item> {
+        default void skip() {
+            next();
+        }
+    }
 
-        String s;
+    // uniformly random k-subset of the items, read in a single pass keeping only k of them (reservoir sampling,
+    // Algorithm L from Li, "Reservoir-Sampling Algorithms of Time Complexity O(n(1 + log(N/n)))", 1994)
+    // returns fewer than k items when there are fewer than k
+    //
+    // Algorithm R draws one random number per item to decide whether it replaces a sampled one. Algorithm L
+    // instead draws how many items to skip before the next replacement: the skips follow a geometric
+    // distribution whose parameter W shrinks as more items go by, so only O(k log(n/k)) random numbers are
+    // drawn for n items and skipped items are read past without being looked at.
+    static <Item> RandomizedQueue<Item> sample(Source<Item> items, int k) {
+        RandomizedQueue<Item> reservoir = new RandomizedQueue<>();
+        if (k <= 0) {
+            return reservoir;
+        }
+
+        // the first k items fill the reservoir, kept in an array so a replacement can pick any slot
+        Item[] sampled = (Item[]) new Object[k];
+        int numSampled = 0;
+        while (numSampled < k && items.hasNext()) {
+            sampled[numSampled++] = items.next();
+        }
 
-        RandomizedQueue<String> rq = new RandomizedQueue<>();
+        if (numSampled == k) {
+            double w = Math.exp(Math.log(randomOpenUnit()) / k);
+            while (true) {
+                // skip is geometric with success probability w, the next item after the skipped ones goes in
+                double skip = Math.floor(Math.log(randomOpenUnit()) / Math.log(1 - w));
+                for (double s = 0; s < skip && items.hasNext(); s++) {
+                    items.skip();
+                }
+                if (!items.hasNext()) {
+                    break;
+                }
+                sampled[StdRandom.uniform(k)] = items.next();
+                w *= Math.exp(Math.log(randomOpenUnit()) / k);
+            }
+        }
 
-        while (!StdIn.isEmpty()) {
-            s = StdIn.readString();
-            rq.enqueue(s);
+        // the reservoir holds a uniform subset, the randomized queue puts it in uniform order
+        for (int i = 0; i < numSampled; i++) {
+            reservoir.enqueue(sampled[i]);
         }
+        return reservoir;
+    }
+
+    // uniform in (0, 1], so its logarithm is finite
+    private static double randomOpenUnit() {
+        return 1.0 - StdRandom.uniform();
+    }
+
+    // the strings on standard input, one token at a time; skipped tokens never become Strings
+    private static Source<String> standardInput() {
+        final FastIn in = new FastIn();
+        return new Source<String>() {
+            public boolean hasNext() {
+                return !in.isEmpty();
+            }
+
+            public String next() {
+                return in.readString();
+            }
+
+            public void skip() {
+                in.skip();
+            }
+        };
+    }
 
-        // StdOut.println(rq.toString());
+    // the integers 0..n-1, skipping without producing them
+    private static Source<Integer> range(final int n) {
+        return new Source<Integer>() {
+            private int next = 0;
+
+            public boolean hasNext() {
+                return next < n;
+            }
+
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new java.util.NoSuchElementException();
+                }
+                return next++;
+            }
+
+            public void skip() {
+                next++;
+            }
+        };
+    }
+
+    // unit testing (optional): every item must land in the sample with probability k/n, however late it comes
+    private static void testInclusion() {
+        int n = 200;
+        int k = 5;
+        int rounds = 200000;
+        int[] included = new int[n];
+        for (int round = 0; round < rounds; round++) {
+            RandomizedQueue<Integer> sampled = sample(range(n), k);
+            assert sampled.size() == k;
+            boolean[] seen = new boolean[n];
+            for (Integer item : sampled) {
+                assert !seen[item];
+                seen[item] = true;
+                included[item]++;
+            }
+        }
+        double expected = (double) rounds * k / n;
+        double stddev = Math.sqrt(expected * (1 - (double) k / n));
+        for (int item = 0; item < n; item++) {
+            double z = (included[item] - expected) / stddev;
+            assert Math.abs(z) < 5 : "item " + item + " included " + included[item] + " times, z = " + z;
+        }
+
+        // fewer items than k: all of them
+        assert sample(range(3), k).size() == 3;
+        assert sample(range(n), 0).isEmpty();
+        StdOut.println("inclusion uniformity ok");
+    }
+
+    // % java Permutation k < input prints k random strings of the input
+    // % java -ea Permutation runs the unit tests instead
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            testInclusion();
+            return;
+        }
+
+        int numOfItemsToPrint = Integer.parseInt(args[0]);
 
-        // StdOut.println("printing " + numOfItemsToPrint);
+        // only numOfItemsToPrint strings are ever kept, however long the input is
+        RandomizedQueue<String> rq = sample(standardInput(), numOfItemsToPrint);
 
         while (numOfItemsToPrint > 0) {
             StdOut.println(rq.dequeue());
@@ -25,4 +148,4 @@ public class Permutation {
         }
 
     }
-}
\ No newline at end of file
+}
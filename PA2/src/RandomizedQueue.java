@@ -1,24 +1,26 @@
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdRandom;
+import java.util.Collection;
 import java.util.Iterator;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
     // we'll use a resizing array to implement this data structure
+    // the items are always packed into array[0..numItems-1], so any index below numItems holds an item:
+    // dequeue moves the last item into the slot it empties, and one random draw picks an item
     // when it gets full, double the array size
-    // when it decreases to 1/4 capacity, cut the array size in half and compact it
+    // when it decreases to 1/4 capacity, cut the array size in half
 
     private static final int STARTING_ARRAY_SIZE = 2;
 
     private Item[] array;
     private int numItems;
-    private int last;       // index of next available slot
+    private boolean shared; // an iterator reads array[0..its size-1], copy before overwriting any of those slots
 
     // construct an empty randomized queue
     public RandomizedQueue() {
         this.array = (Item[]) new Object[STARTING_ARRAY_SIZE];
         this.numItems = 0;
-        last = 0;
     }
 
     // is the queue empty?
@@ -37,44 +39,66 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new java.lang.IllegalArgumentException();
         }
 
-        // insert the item into the next available index
-        this.array[last] = item;
-        this.numItems++;
-
         // resize the array if it is full
         if (this.numItems == this.array.length) {
             resize(2*this.array.length);
         }
 
-        advanceLastToNextAvailable();
+        // insert the item right after the last one
+        this.array[this.numItems++] = item;
+    }
+
+    // add every item of the array, growing the array at most once
+    public void enqueueAll(Item[] items) {
+        if (items == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        enqueueAll(items, items.length);
     }
 
-    private void advanceLastToNextAvailable() {
-        do {
-            // move forward and wrap around if necessary
-            last++;
-            if (last == this.array.length) {
-                last = 0;
+    // add every item of the collection, growing the array at most once
+    public void enqueueAll(Collection<? extends Item> items) {
+        if (items == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        Object[] copy = items.toArray();
+        enqueueAll((Item[]) copy, copy.length);
+    }
+
+    private void enqueueAll(Item[] items, int count) {
+        // check everything first so a null leaves the queue unchanged
+        for (int i = 0; i < count; i++) {
+            if (items[i] == null) {
+                throw new java.lang.IllegalArgumentException();
             }
-        } while (this.array[last] != null);
+        }
+        if ((long) this.numItems + count > Integer.MAX_VALUE - 8) {
+            throw new java.lang.IllegalArgumentException("too many items");
+        }
+
+        // the capacity repeated doubling would have reached, in one step
+        int capacity = this.array.length;
+        while (capacity < this.numItems + count) {
+            capacity = (capacity > (Integer.MAX_VALUE - 8) / 2) ? Integer.MAX_VALUE - 8 : 2*capacity;
+        }
+        if (capacity != this.array.length) {
+            resize(capacity);
+        }
+
+        // appending never touches the slots an iterator reads
+        System.arraycopy(items, 0, this.array, this.numItems, count);
+        this.numItems += count;
     }
 
     private void resize(int capacity) {
         // StdOut.println("resizing array to " + capacity);
 
-        Item[] oldArray = this.array;
         Item[] newArray = (Item[]) new Object[capacity];
+        System.arraycopy(this.array, 0, newArray, 0, this.numItems);
 
-        // iterate the old array and copy over items if they exist
-        for (int i = 0, j = 0; i < oldArray.length; i++) {
-            if (oldArray[i] != null) {
-                newArray[j++] = oldArray[i];
-                last = j;
-            }
-        }
-
-        // set the new array as the proper one
+        // set the new array as the proper one, no iterator has seen it yet
         this.array = newArray;
+        this.shared = false;
     }
 
     // remove and return a random item
@@ -83,30 +107,84 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new java.util.NoSuchElementException();
         }
 
-        // find a random item
-        int randomIndex = findValidRandomIndex();
+        // iterators only read slots below the size at their creation, which dequeue overwrites
+        if (this.shared) {
+            resize(this.array.length);
+        }
+
+        // take a random item and fill its slot with the last item
+        int randomIndex = StdRandom.uniform(this.numItems);
         Item item = this.array[randomIndex];
-        this.array[randomIndex] = null;
         this.numItems--;
-
-        // put the last cursor at the vacated index
-        last = randomIndex;
+        this.array[randomIndex] = this.array[this.numItems];
+        this.array[this.numItems] = null; // avoid loitering
 
         // if array is 1/4 full, cut it in half
-        if (numItems < (this.array.length / 4)) {
+        if (this.numItems > 0 && this.numItems == this.array.length / 4) {
             resize(this.array.length / 2);
         }
 
         return item;
     }
 
-    private int findValidRandomIndex() {
-        int randomIndex;
-        do {
-            // ensure item is at the random index
-            randomIndex = StdRandom.uniform(this.array.length);
-        } while (this.array[randomIndex] == null);
-        return randomIndex;
+    // remove k random items and store them in out[0..k-1], in random order
+    // one partial Fisher-Yates pass moves the k picks to the end of the packed items, and the array then
+    // shrinks at most once, straight to the capacity k single dequeues would have left it at
+    public void dequeueBatch(int k, Item[] out) {
+        if (out == null || k < 0 || k > out.length) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        if (k > this.numItems) {
+            throw new java.util.NoSuchElementException();
+        }
+        if (k == 0) {
+            return;
+        }
+
+        int remaining = this.numItems - k;
+        int capacity = this.array.length;
+        while (capacity > STARTING_ARRAY_SIZE && remaining <= capacity / 4) {
+            capacity /= 2;
+        }
+
+        if (!this.shared && capacity == this.array.length) {
+            for (int i = 0; i < k; i++) {
+                // swap a random item among the first numItems - i into the last of those slots
+                int last = this.numItems - 1 - i;
+                int randomIndex = StdRandom.uniform(last + 1);
+                Item item = this.array[randomIndex];
+                this.array[randomIndex] = this.array[last];
+                this.array[last] = null; // avoid loitering
+                out[i] = item;
+            }
+            this.numItems = remaining;
+            return;
+        }
+
+        // a new array is needed anyway, to unshare (the swaps would overwrite slots iterators read) or to shrink:
+        // allocate it once at its final capacity and run the same swaps with the first remaining slots in it and
+        // the last k slots in out, where the picks end up, so the old array is only ever read
+        Item[] newArray = (Item[]) new Object[capacity];
+        System.arraycopy(this.array, 0, newArray, 0, remaining);
+        System.arraycopy(this.array, remaining, out, 0, k);
+        for (int i = k - 1; i >= 0; i--) {
+            // swap a random item among the first remaining + i + 1 into the last of those slots, out[i]
+            int randomIndex = StdRandom.uniform(remaining + i + 1);
+            Item item;
+            if (randomIndex < remaining) {
+                item = newArray[randomIndex];
+                newArray[randomIndex] = out[i];
+            } else {
+                item = out[randomIndex - remaining];
+                out[randomIndex - remaining] = out[i];
+            }
+            out[i] = item;
+        }
+
+        // set the new array as the proper one, no iterator has seen it yet
+        this.array = newArray;
+        this.shared = false;
+        this.numItems = remaining;
     }
 
     // return (but do not remove) a random item
@@ -115,41 +193,42 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new java.util.NoSuchElementException();
         }
 
-        // find a random item
-        int randomIndex = findValidRandomIndex();
-
-        return this.array[randomIndex];
+        return this.array[StdRandom.uniform(this.numItems)];
     }
 
     // return an independent iterator over items in random order
-    // iterator contains a copy of the array where the items are in random order
-    // thus next() and hasNext() runs in constant time
+    // the iterator shares the array with the queue until the queue next dequeues (copy-on-write), and shuffles
+    // lazily, one Fisher-Yates step per next(), so creating it is O(1) and reading k items costs O(k)
     public Iterator<Item> iterator() {
-        return new ArrayIterator(this.array, this.numItems);
+        this.shared = true;
+        return new RandomIterator(this.array, this.numItems);
     }
 
-    private class ArrayIterator implements Iterator<Item> {
-        private Item[] randomizedArray;
-        private int currentIndex;
+    // Fisher-Yates over the positions 0..n-1 of a snapshot that must not be modified: position p holds
+    // snapshot[p] unless a swap moved another item there, and those few moved positions are kept in a small
+    // int-to-int hash table instead of a copy of the array. Once a good part of the items have been returned
+    // the table would cost as much as a copy, so the remaining items are copied out and shuffled in place.
+    private class RandomIterator implements Iterator<Item> {
+        private static final int DENSE_FRACTION = 8; // copy once more than 1/8 of the items were returned
 
-        public ArrayIterator(Item [] array, int numItems) {
-            randomizedArray = (Item[]) new Object[numItems];
-            // clone the array by creating a new one with only valid items
-            for (int i = 0, j = 0; i < array.length; i++) {
-                if (array[i] != null) {
-                    randomizedArray[j++] = array[i];
-                }
-            }
+        private Item[] snapshot;    // shared with the queue, read only
+        private Item[] dense;       // own copy, null while using the table
+        private final int n;
+        private int currentIndex;
 
-            // shuffle the array
-            StdRandom.shuffle(randomizedArray);
+        // open addressing table of moved positions: key p + 1 (0 = empty slot), value = index into snapshot
+        private int[] movedKeys = new int[16];
+        private int[] movedValues = new int[16];
+        private int numMoved;
 
-            // set our pointer to start
+        public RandomIterator(Item[] array, int numItems) {
+            snapshot = array;
+            n = numItems;
             currentIndex = 0;
         }
 
         public boolean hasNext() {
-            return currentIndex < randomizedArray.length;
+            return currentIndex < n;
         }
 
         public Item next() {
@@ -157,11 +236,92 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
                 throw new java.util.NoSuchElementException();
             }
 
-            // return the current item and move pointer forward
-            return randomizedArray[currentIndex++];
+            // swap a random remaining position into currentIndex and return it
+            int j = currentIndex + StdRandom.uniform(n - currentIndex);
+            if (dense != null) {
+                Item item = dense[j];
+                dense[j] = dense[currentIndex];
+                dense[currentIndex++] = null;
+                return item;
+            }
+
+            Item item = snapshot[moved(j)];
+            if (j != currentIndex) {
+                setMoved(j, moved(currentIndex));
+            }
+            currentIndex++;
+
+            if (currentIndex > n / DENSE_FRACTION && currentIndex < n) {
+                makeDense();
+            }
+            return item;
+        }
+
+        // index into snapshot of the item now at position p
+        private int moved(int p) {
+            int mask = movedKeys.length - 1;
+            for (int h = hash(p) & mask; movedKeys[h] != 0; h = (h + 1) & mask) {
+                if (movedKeys[h] == p + 1) {
+                    return movedValues[h];
+                }
+            }
+            return p;
+        }
+
+        private void setMoved(int p, int index) {
+            if (2 * (numMoved + 1) > movedKeys.length) {
+                growTable();
+            }
+            int mask = movedKeys.length - 1;
+            int h = hash(p) & mask;
+            while (movedKeys[h] != 0 && movedKeys[h] != p + 1) {
+                h = (h + 1) & mask;
+            }
+            if (movedKeys[h] == 0) {
+                movedKeys[h] = p + 1;
+                numMoved++;
+            }
+            movedValues[h] = index;
+        }
+
+        private void growTable() {
+            int[] oldKeys = movedKeys;
+            int[] oldValues = movedValues;
+            movedKeys = new int[2 * oldKeys.length];
+            movedValues = new int[2 * oldValues.length];
+            numMoved = 0;
+            for (int h = 0; h < oldKeys.length; h++) {
+                if (oldKeys[h] != 0) {
+                    setMoved(oldKeys[h] - 1, oldValues[h]);
+                }
+            }
+        }
+
+        private int hash(int p) {
+            return p * 0x9E3779B9 >>> 7;
+        }
+
+        // copy the items still to be returned, with the moves applied, and let go of the snapshot and the table
+        private void makeDense() {
+            dense = (Item[]) new Object[n];
+            System.arraycopy(snapshot, currentIndex, dense, currentIndex, n - currentIndex);
+            for (int h = 0; h < movedKeys.length; h++) {
+                int p = movedKeys[h] - 1;
+                if (p >= currentIndex) {
+                    dense[p] = snapshot[movedValues[h]];
+                }
+            }
+            snapshot = null;
+            movedKeys = null;
+            movedValues = null;
         }
     }
 
+    // length of the backing array
+    private int capacity() {
+        return this.array.length;
+    }
+
     public String toString() {
         String s = "";
         for (int i = 0; i < this.array.length; i++) {
@@ -203,5 +363,115 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             }
             StdOut.println();
         }
+
+        // after two dequeues have moved items around, every item is still equally likely to come out next
+        int[] counts = new int[10];
+        int rounds = 100000;
+        for (int round = 0; round < rounds; round++) {
+            RandomizedQueue<Integer> small = new RandomizedQueue<>();
+            for (int i = 0; i < 12; i++) {
+                small.enqueue(i);
+            }
+            small.dequeue();
+            small.dequeue();
+            assert small.size() == 10;
+            boolean[] seen = new boolean[12];
+            for (Integer item : small) {
+                assert !seen[item];
+                seen[item] = true;
+            }
+            Integer third = small.dequeue();
+            if (third < counts.length) {
+                counts[third]++;
+            }
+        }
+        for (int count : counts) {
+            // each of the first ten items is dequeued third with probability 1/12
+            assert Math.abs(count - rounds / 12.0) < 5 * Math.sqrt(rounds / 12.0) : count;
+        }
+        StdOut.println("uniform dequeue ok");
+
+        // the lazy iterator returns every item exactly once, in each position with equal probability, and does
+        // not see dequeues made after it was created
+        int size = 50;
+        int[][] positions = new int[size][size];
+        for (int round = 0; round < rounds / 10; round++) {
+            RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+            for (int i = 0; i < size; i++) {
+                queue.enqueue(i);
+            }
+            Iterator<Integer> it = queue.iterator();
+            queue.dequeue();
+            queue.enqueue(size);
+            boolean[] seen = new boolean[size];
+            for (int position = 0; position < size; position++) {
+                Integer item = it.next();
+                assert !seen[item];
+                seen[item] = true;
+                positions[item][position]++;
+            }
+            assert !it.hasNext();
+        }
+        for (int item = 0; item < size; item++) {
+            for (int position = 0; position < size; position++) {
+                double expected = rounds / 10.0 / size;
+                assert Math.abs(positions[item][position] - expected) < 6 * Math.sqrt(expected)
+                        : item + " at " + position + ": " + positions[item][position];
+            }
+        }
+        StdOut.println("lazy iterator ok");
+
+        // bulk load and drain: every item comes out once, each item is in a batch with probability k/n,
+        // and the array ends up no larger than single dequeues would leave it
+        // every other round an iterator is open during the first batch, which must leave its snapshot alone
+        int[] picked = new int[size];
+        int k = 10;
+        for (int round = 0; round < rounds / 10; round++) {
+            RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+            Integer[] items = new Integer[size / 2];
+            java.util.List<Integer> rest = new java.util.ArrayList<>();
+            for (int i = 0; i < size / 2; i++) {
+                items[i] = i;
+                rest.add(size / 2 + i);
+            }
+            queue.enqueueAll(items);
+            queue.enqueueAll(rest);
+            assert queue.size() == size && queue.capacity() == 64;
+
+            Iterator<Integer> open = (round % 2 == 0) ? queue.iterator() : null;
+            Integer[] out = new Integer[k];
+            queue.dequeueBatch(k, out);
+            if (open != null) {
+                boolean[] iterated = new boolean[size];
+                int numIterated = 0;
+                while (open.hasNext()) {
+                    Integer item = open.next();
+                    assert !iterated[item];
+                    iterated[item] = true;
+                    numIterated++;
+                }
+                assert numIterated == size;
+            }
+            boolean[] seen = new boolean[size];
+            for (Integer item : out) {
+                assert !seen[item];
+                seen[item] = true;
+                picked[item]++;
+            }
+            while (!queue.isEmpty()) {
+                int batch = Math.min(k, queue.size());
+                queue.dequeueBatch(batch, out);
+                for (int i = 0; i < batch; i++) {
+                    assert !seen[out[i]];
+                    seen[out[i]] = true;
+                }
+            }
+            assert queue.capacity() == STARTING_ARRAY_SIZE;
+        }
+        for (int item = 0; item < size; item++) {
+            double expected = rounds / 10.0 * k / size;
+            assert Math.abs(picked[item] - expected) < 5 * Math.sqrt(expected) : item + ": " + picked[item];
+        }
+        StdOut.println("enqueueAll and dequeueBatch ok");
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+/*
+ * Timing harness shared by the multi-threaded benchmarks (WorkStealingDequeBenchmark,
+ * ConcurrentRandomizedQueueBenchmark)
+ *
+ * Runs one Worker per thread, all started together, and times them from the first start to the last join. Every
+ * worker returns a checksum of what it computed, which is kept so the JIT cannot drop the work as dead code.
+ */
+public final class ThreadBenchmark {
+
+    // what each benchmark thread runs, id is 0..threads-1
+    public interface Worker {
+        long run(int id);
+    }
+
+    // sum of every checksum returned so far, only there to keep the workers' results alive
+    private static volatile long checksum;
+
+    private ThreadBenchmark() { }
+
+    // start threads workers together and return the seconds until the last one finishes
+    public static double time(int threads, Worker worker) throws InterruptedException {
+        if (threads <= 0 || worker == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        final long[] sums = new long[threads];
+        Thread[] pool = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            pool[i] = new Thread(() -> sums[id] = worker.run(id));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : pool) {
+            thread.start();
+        }
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long sum = 0;
+        for (long s : sums) {
+            sum += s;
+        }
+        checksum += sum;
+        return seconds;
+    }
+}
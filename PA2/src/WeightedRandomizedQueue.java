@@ -0,0 +1,261 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.Iterator;
+
+/*
+ * Randomized queue where every item is picked with probability proportional to its weight
+ *
+ * Same packed resizing array as RandomizedQueue (dequeue moves the last item into the emptied slot), plus a
+ * Fenwick tree over the weights by slot. sample() and dequeue() draw one uniform number in [0, total weight) and
+ * walk down the tree to the slot whose prefix-sum range contains it, so enqueue, sample and dequeue all take
+ * O(log n) and no item is ever duplicated to raise its odds. The tree is rebuilt exactly from the weights on every
+ * resize, which also wipes the floating-point error the incremental updates accumulate.
+ *
+ * Mixed magnitudes need more than that: next to a weight of 1e17 the tree nodes above it cannot hold a weight of 1
+ * (the spacing of doubles there is 16), so once the heavy item leaves, the incremental update leaves those nodes
+ * at 0 rather than at the light weights. So a dequeue that removes more than half of the total weight also
+ * rebuilds the tree from the weights, in O(n). Each such rebuild at least halves the total weight.
+ */
+public class WeightedRandomizedQueue<Item> implements Iterable<Item> {
+
+    private static final int STARTING_ARRAY_SIZE = 2;
+
+    private Item[] array;
+    private double[] weights;   // weights[i] = weight of array[i]
+    private double[] tree;      // Fenwick tree over weights, 1-based, tree.length = array.length + 1
+    private int numItems;
+
+    // construct an empty weighted randomized queue
+    public WeightedRandomizedQueue() {
+        this.array = (Item[]) new Object[STARTING_ARRAY_SIZE];
+        this.weights = new double[STARTING_ARRAY_SIZE];
+        this.tree = new double[STARTING_ARRAY_SIZE + 1];
+        this.numItems = 0;
+    }
+
+    // independent copy of other, for iteration
+    private WeightedRandomizedQueue(WeightedRandomizedQueue<Item> other) {
+        this.array = other.array.clone();
+        this.weights = other.weights.clone();
+        this.tree = other.tree.clone();
+        this.numItems = other.numItems;
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return this.numItems == 0;
+    }
+
+    // return the number of items on the queue
+    public int size() {
+        return this.numItems;
+    }
+
+    // sum of the weights of all items on the queue
+    public double totalWeight() {
+        // the array length is a power of two, so the last tree node covers every slot
+        return this.tree[this.array.length];
+    }
+
+    // add the item with the given positive weight
+    public void enqueue(Item item, double weight) {
+        if (item == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new java.lang.IllegalArgumentException("weight must be positive and finite: " + weight);
+        }
+
+        // resize the array if it is full
+        if (this.numItems == this.array.length) {
+            resize(2*this.array.length);
+        }
+
+        this.array[this.numItems] = item;
+        this.weights[this.numItems] = weight;
+        addToTree(this.numItems, weight);
+        this.numItems++;
+    }
+
+    // remove and return a random item, chosen with probability proportional to its weight
+    public Item dequeue() {
+        if (isEmpty()) {
+            throw new java.util.NoSuchElementException();
+        }
+
+        int index = randomIndex();
+        Item item = this.array[index];
+        int last = this.numItems - 1;
+        double removed = this.weights[index];
+        double remaining = totalWeight() - removed;
+
+        // move the last item into the emptied slot
+        addToTree(index, this.weights[last] - this.weights[index]);
+        addToTree(last, -this.weights[last]);
+        this.array[index] = this.array[last];
+        this.weights[index] = this.weights[last];
+        this.array[last] = null; // avoid loitering
+        this.weights[last] = 0;
+        this.numItems--;
+
+        if (this.numItems == 0) {
+            // start over from exact zeros rather than whatever rounding error is left
+            java.util.Arrays.fill(this.tree, 0);
+        } else if (this.numItems == this.array.length / 4) {
+            // if array is 1/4 full, cut it in half
+            resize(this.array.length / 2);
+        } else if (removed > remaining) {
+            // the remaining weights may have been rounded away next to the removed one, recompute them exactly
+            buildTree(this.weights, this.tree);
+        }
+
+        return item;
+    }
+
+    // return (but do not remove) a random item, chosen with probability proportional to its weight
+    public Item sample() {
+        if (isEmpty()) {
+            throw new java.util.NoSuchElementException();
+        }
+
+        return this.array[randomIndex()];
+    }
+
+    // slot whose range of the prefix sums contains a uniform draw from [0, total weight)
+    private int randomIndex() {
+        double target = StdRandom.uniform() * totalWeight();
+
+        // descend the tree: after each step, index is the number of slots whose weights sum to at most target
+        int index = 0;
+        for (int step = this.array.length; step > 0; step >>>= 1) {
+            if (index + step <= this.array.length && this.tree[index + step] <= target) {
+                index += step;
+                target -= this.tree[index];
+            }
+        }
+
+        // rounding can push the walk past the last item, take the last one in that case
+        return Math.min(index, this.numItems - 1);
+    }
+
+    // add delta to the weight of slot i in the tree
+    private void addToTree(int i, double delta) {
+        for (int node = i + 1; node < this.tree.length; node += node & -node) {
+            this.tree[node] += delta;
+        }
+    }
+
+    private void resize(int capacity) {
+        Item[] newArray = (Item[]) new Object[capacity];
+        double[] newWeights = new double[capacity];
+        System.arraycopy(this.array, 0, newArray, 0, this.numItems);
+        System.arraycopy(this.weights, 0, newWeights, 0, this.numItems);
+
+        double[] newTree = new double[capacity + 1];
+        buildTree(newWeights, newTree);
+
+        this.array = newArray;
+        this.weights = newWeights;
+        this.tree = newTree;
+    }
+
+    // build the Fenwick tree over weights in O(weights.length), overwriting tree: each node passes its sum on to
+    // its parent
+    private static void buildTree(double[] weights, double[] tree) {
+        java.util.Arrays.fill(tree, 0);
+        for (int node = 1; node < tree.length; node++) {
+            tree[node] += weights[node - 1];
+            int parent = node + (node & -node);
+            if (parent < tree.length) {
+                tree[parent] += tree[node];
+            }
+        }
+    }
+
+    // return an independent iterator over items in weighted random order: each next() picks among the items not
+    // returned yet with probability proportional to their weights, like repeated dequeues on a copy
+    public Iterator<Item> iterator() {
+        final WeightedRandomizedQueue<Item> copy = new WeightedRandomizedQueue<>(this);
+        return new Iterator<Item>() {
+            public boolean hasNext() {
+                return !copy.isEmpty();
+            }
+
+            public Item next() {
+                if (!hasNext()) {
+                    throw new java.util.NoSuchElementException();
+                }
+                return copy.dequeue();
+            }
+        };
+    }
+
+    // unit testing (optional)
+    public static void main(String[] args) {
+        // sample frequencies follow the weights 1, 2, 3, 4
+        WeightedRandomizedQueue<Integer> queue = new WeightedRandomizedQueue<>();
+        for (int i = 1; i <= 4; i++) {
+            queue.enqueue(i, i);
+        }
+        assert queue.totalWeight() == 10;
+        int samples = 1000000;
+        int[] counts = new int[5];
+        for (int s = 0; s < samples; s++) {
+            counts[queue.sample()]++;
+        }
+        for (int i = 1; i <= 4; i++) {
+            double expected = samples * i / 10.0;
+            assert Math.abs(counts[i] - expected) < 5 * Math.sqrt(expected) : i + ": " + counts[i];
+        }
+
+        // the first dequeue follows the weights too, across resizes and swaps with the last item
+        int rounds = 100000;
+        int[] first = new int[20];
+        for (int round = 0; round < rounds; round++) {
+            WeightedRandomizedQueue<Integer> q = new WeightedRandomizedQueue<>();
+            for (int i = 0; i < 20; i++) {
+                q.enqueue(i, (i < 10) ? 1 : 3);
+            }
+            first[q.dequeue()]++;
+            // draining visits every item exactly once and empties the tree
+            boolean[] seen = new boolean[20];
+            int remaining = 0;
+            for (Integer item : q) {
+                assert !seen[item];
+                seen[item] = true;
+                remaining++;
+            }
+            assert remaining == 19 && q.size() == 19;
+        }
+        for (int i = 0; i < 20; i++) {
+            double expected = rounds * ((i < 10) ? 1 : 3) / 40.0;
+            assert Math.abs(first[i] - expected) < 5 * Math.sqrt(expected) : i + ": " + first[i];
+        }
+
+        // mixed magnitudes: the light weights next to 1e17 must come back exactly once it is gone
+        WeightedRandomizedQueue<Integer> mixed = new WeightedRandomizedQueue<>();
+        for (int i = 0; i < 7; i++) {
+            mixed.enqueue(i, 1);
+        }
+        mixed.enqueue(7, 1e17);
+        int heavy;
+        do {
+            heavy = mixed.dequeue();
+        } while (heavy != 7);
+        assert mixed.totalWeight() == mixed.size() : mixed.totalWeight();
+        int[] light = new int[7];
+        for (int s = 0; s < samples; s++) {
+            light[mixed.sample()]++;
+        }
+        for (Integer item : mixed) {
+            double expected = (double) samples / mixed.size();
+            assert Math.abs(light[item] - expected) < 5 * Math.sqrt(expected) : java.util.Arrays.toString(light);
+        }
+
+        while (!queue.isEmpty()) {
+            queue.dequeue();
+        }
+        assert queue.totalWeight() == 0;
+        StdOut.println("weighted sample, dequeue, iterator and mixed magnitudes ok");
+    }
+}
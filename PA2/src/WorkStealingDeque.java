@@ -0,0 +1,204 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Lock-free work-stealing deque (Chase and Lev, "Dynamic Circular Work-Stealing Deque", SPAA 2005)
+ *
+ * One thread owns the deque and works at its end: addLast() and removeLast() / pollLast(). Any number of other
+ * threads steal from the front with removeFirst() / pollFirst(). The owner's operations are a few plain and
+ * volatile accesses; only taking the very last item, and stealing, need a CAS on top. Nothing ever blocks.
+ *
+ * Items are at indices top..bottom-1 of an unbounded index space, stored at index & (capacity - 1) of a circular
+ * array. The owner grows the array by copying the live range into one twice as large, thieves that still hold the
+ * old array find the same items at the same indices there. The array never shrinks, and the slot of a stolen item
+ * is only cleared when the owner reuses it (the owner clears the slots it pops itself).
+ *
+ * There is no addFirst(): only the owner may add, and only at its end. size() and isEmpty() are snapshots
+ * that may be stale by the time they return when other threads are stealing.
+ */
+public class WorkStealingDeque<Item> {
+
+    private static final int MIN_CAPACITY = 32;
+
+    // the updater is per class, so its type argument can only be the raw class
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<WorkStealingDeque> TOP =
+            AtomicLongFieldUpdater.newUpdater(WorkStealingDeque.class, "top");
+
+    private volatile long top;       // index of the first item, only ever incremented, by CAS
+    private volatile long bottom;    // one past the index of the last item, only written by the owner
+    private volatile AtomicReferenceArray<Item> items;
+
+    // construct an empty deque, owned by whichever thread adds and removes at its end
+    public WorkStealingDeque() {
+        items = new AtomicReferenceArray<>(MIN_CAPACITY);
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        long t = top;
+        long b = bottom;
+        return (int) Math.max(0, b - t);
+    }
+
+    // add the item to the end, owner only
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        long b = bottom;
+        long t = top;
+        AtomicReferenceArray<Item> a = items;
+        if (b - t >= a.length() - 1) {
+            a = grow(a, t, b);
+        }
+        a.lazySet((int) b & (a.length() - 1), item);
+        // the volatile write publishes the item to thieves that read bottom afterwards
+        bottom = b + 1;
+    }
+
+    // copy items t..b-1 into an array twice as large and publish it
+    private AtomicReferenceArray<Item> grow(AtomicReferenceArray<Item> a, long t, long b) {
+        AtomicReferenceArray<Item> grown = new AtomicReferenceArray<>(2 * a.length());
+        for (long i = t; i < b; i++) {
+            grown.lazySet((int) i & (grown.length() - 1), a.get((int) i & (a.length() - 1)));
+        }
+        items = grown;
+        return grown;
+    }
+
+    // remove and return the item from the end, owner only
+    public Item removeLast() {
+        Item item = pollLast();
+        if (item == null) {
+            throw new java.util.NoSuchElementException();
+        }
+        return item;
+    }
+
+    // remove and return the item from the end, or null when empty, owner only
+    public Item pollLast() {
+        long b = bottom - 1;
+        AtomicReferenceArray<Item> a = items;
+        // claim slot b before looking at top; volatile write then volatile read cannot be reordered,
+        // so a thief either sees the lowered bottom or this read sees its increment of top
+        bottom = b;
+        long t = top;
+
+        if (t > b) {
+            // was empty
+            bottom = b + 1;
+            return null;
+        }
+
+        int slot = (int) b & (a.length() - 1);
+        Item item = a.get(slot);
+        if (t == b) {
+            // last item: race the thieves for it through top, as they do
+            if (!TOP.compareAndSet(this, t, t + 1)) {
+                item = null;
+            }
+            bottom = b + 1;
+        } else {
+            // no thief can reach slot b while top < b, see above
+            a.lazySet(slot, null);
+        }
+        return item;
+    }
+
+    // remove and return the item from the front, any thread
+    public Item removeFirst() {
+        Item item = pollFirst();
+        if (item == null) {
+            throw new java.util.NoSuchElementException();
+        }
+        return item;
+    }
+
+    // remove and return the item from the front, or null when empty, any thread
+    public Item pollFirst() {
+        while (true) {
+            // read top before bottom, the mirror image of pollLast()
+            long t = top;
+            long b = bottom;
+            if (t >= b) {
+                return null;
+            }
+
+            AtomicReferenceArray<Item> a = items;
+            Item item = a.get((int) t & (a.length() - 1));
+            if (TOP.compareAndSet(this, t, t + 1)) {
+                return item;
+            }
+            // lost to another thief or to the owner taking the last item, some thread made progress: retry
+        }
+    }
+
+    // stress test: the owner adds and removes at its end while thieves steal, every item is taken exactly once
+    public static void main(String[] args) throws InterruptedException {
+        final int items = 2000000;
+        final int thieves = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+
+        final WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(items);
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Thread[] threads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+            threads[i] = new Thread(() -> {
+                while (true) {
+                    Integer item = deque.pollFirst();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                    } else if (done.get()) {
+                        // the owner has drained the deque, nothing is left to steal
+                        return;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // owner: bursts of adds followed by a few pops, so the deque grows, empties and races for the last item
+        java.util.Random random = new java.util.Random(42);
+        int next = 0;
+        while (next < items) {
+            int burst = Math.min(items - next, random.nextInt(200));
+            for (int i = 0; i < burst; i++) {
+                deque.addLast(next++);
+            }
+            int pops = random.nextInt(100);
+            for (int i = 0; i < pops; i++) {
+                Integer item = deque.pollLast();
+                if (item == null) {
+                    break;
+                }
+                taken.incrementAndGet(item);
+            }
+        }
+        for (Integer item = deque.pollLast(); item != null; item = deque.pollLast()) {
+            taken.incrementAndGet(item);
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < items; i++) {
+            assert taken.get(i) == 1 : "item " + i + " taken " + taken.get(i) + " times";
+        }
+        assert deque.isEmpty();
+        StdOut.println(items + " items, " + thieves + " thieves: every item taken exactly once");
+    }
+}
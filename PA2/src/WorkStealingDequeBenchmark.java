@@ -0,0 +1,139 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Throughput of WorkStealingDeque as a scheduling queue, against one Deque shared behind a lock
+ *
+ * Every worker thread produces tasks in bursts and runs about half of them right away, leaving the rest queued.
+ * With work stealing each worker owns a WorkStealingDeque, runs its own tasks from the end and, once it runs out,
+ * steals from the front of a random other worker's deque. The baseline puts every task in a single Deque guarded
+ * by synchronized. Both stop when every task has run; the result is tasks per second for 1, 2, 4, ... threads.
+ *
+ * % java WorkStealingDequeBenchmark 32 1000000
+ */
+public class WorkStealingDequeBenchmark {
+
+    private static final int BURST = 64;
+
+    // run tasksPerThread tasks on each of threads workers that own a work-stealing deque each, return seconds
+    private static double workStealing(int threads, int tasksPerThread) throws InterruptedException {
+        final WorkStealingDeque<Integer>[] deques = newDeques(threads);
+        final long total = (long) threads * tasksPerThread;
+        final AtomicLong completed = new AtomicLong();
+
+        return ThreadBenchmark.time(threads, id -> {
+            WorkStealingDeque<Integer> own = deques[id];
+            long sum = 0;
+            int produced = 0;
+            while (produced < tasksPerThread) {
+                int burst = Math.min(BURST, tasksPerThread - produced);
+                for (int i = 0; i < burst; i++) {
+                    own.addLast(produced++);
+                }
+                int ran = 0;
+                for (int i = 0; i < burst / 2; i++) {
+                    Integer task = own.pollLast();
+                    if (task == null) {
+                        break;
+                    }
+                    sum += task;
+                    ran++;
+                }
+                completed.addAndGet(ran);
+            }
+
+            // drain our own deque, then help the others until every task has run
+            int ran = 0;
+            for (Integer task = own.pollLast(); task != null; task = own.pollLast()) {
+                sum += task;
+                ran++;
+            }
+            completed.addAndGet(ran);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (completed.get() < total) {
+                Integer task = deques[random.nextInt(threads)].pollFirst();
+                if (task != null) {
+                    sum += task;
+                    completed.incrementAndGet();
+                }
+            }
+            return sum;
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static WorkStealingDeque<Integer>[] newDeques(int n) {
+        WorkStealingDeque<Integer>[] deques = new WorkStealingDeque[n];
+        for (int i = 0; i < n; i++) {
+            deques[i] = new WorkStealingDeque<>();
+        }
+        return deques;
+    }
+
+    // the same workload with one Deque shared by all workers behind its monitor, return seconds
+    private static double synchronizedDeque(int threads, int tasksPerThread) throws InterruptedException {
+        final Deque<Integer> shared = new Deque<>();
+        final long total = (long) threads * tasksPerThread;
+        final AtomicLong completed = new AtomicLong();
+
+        return ThreadBenchmark.time(threads, id -> {
+            long sum = 0;
+            int produced = 0;
+            while (produced < tasksPerThread) {
+                int burst = Math.min(BURST, tasksPerThread - produced);
+                for (int i = 0; i < burst; i++) {
+                    synchronized (shared) {
+                        shared.addLast(produced++);
+                    }
+                }
+                int ran = 0;
+                for (int i = 0; i < burst / 2; i++) {
+                    Integer task;
+                    synchronized (shared) {
+                        task = shared.isEmpty() ? null : shared.removeLast();
+                    }
+                    if (task == null) {
+                        break;
+                    }
+                    sum += task;
+                    ran++;
+                }
+                completed.addAndGet(ran);
+            }
+
+            while (completed.get() < total) {
+                Integer task;
+                synchronized (shared) {
+                    task = shared.isEmpty() ? null : shared.removeFirst();
+                }
+                if (task != null) {
+                    sum += task;
+                    completed.incrementAndGet();
+                }
+            }
+            return sum;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 2) {
+            System.err.println("Usage: java WorkStealingDequeBenchmark <maxThreads> <tasksPerThread>");
+            return;
+        }
+
+        int maxThreads = Integer.parseInt(args[0]);
+        int tasksPerThread = Integer.parseInt(args[1]);
+
+        // warm up both paths so the first row is not measuring the interpreter
+        workStealing(1, tasksPerThread);
+        synchronizedDeque(1, tasksPerThread);
+
+        System.out.printf("%8s %22s %22s\n", "threads", "work-stealing tasks/s", "synchronized tasks/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double tasks = (double) threads * tasksPerThread;
+            double stealing = workStealing(threads, tasksPerThread);
+            double locked = synchronizedDeque(threads, tasksPerThread);
+            System.out.printf("%8d %22.0f %22.0f\n", threads, tasks / stealing, tasks / locked);
+        }
+    }
+}
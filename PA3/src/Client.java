@@ -1,6 +1,5 @@
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.In;
 
 import java.awt.*;
 
@@ -9,7 +8,7 @@ public class Client {
     public static void main(String[] args) {
 
         // read the n points from a file
-        In in = new In(args[0]);
+        FastIn in = new FastIn(args[0]);
         int n = in.readInt();
         Point[] points = new Point[n];
         for (int i = 0; i < n; i++) {
@@ -17,6 +16,7 @@ public class Client {
             int y = in.readInt();
             points[i] = new Point(x, y);
         }
+        in.close();
 
         // draw the points
         StdDraw.enableDoubleBuffering();
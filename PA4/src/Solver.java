@@ -1,4 +1,3 @@
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.MinPQ;
 import edu.princeton.cs.algs4.StdOut;
 import java.util.ArrayList;
@@ -159,12 +158,13 @@ public class Solver {
     public static void main(String[] args) {
 
         // create initial board from file
-        In in = new In(args[0]);
+        FastIn in = new FastIn(args[0]);
         int n = in.readInt();
         int[][] blocks = new int[n][n];
         for (int i = 0; i < n; i++)
             for (int j = 0; j < n; j++)
                 blocks[i][j] = in.readInt();
+        in.close();
         Board initial = new Board(blocks);
 
         // solve the puzzle
@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac NearestNeighborVisualizer.java
  *  Execution:    java NearestNeighborVisualizer input.txt
- *  Dependencies: PointSET.java KdTree.java
+ *  Dependencies: PointSET.java KdTree.java FastIn.java
  *
  *  Read points from a file (specified as a command-line argument) and
  *  draw to standard draw. Highlight the closest point to the mouse.
@@ -11,7 +11,6 @@
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdOut;
@@ -22,7 +21,7 @@ public class NearestNeighborVisualizer {
 
         // initialize the two data structures with point from file
         String filename = args[0];
-        In in = new In(filename);
+        FastIn in = new FastIn(filename);
         PointSET brute = new PointSET();
         KdTree kdtree = new KdTree();
         while (!in.isEmpty()) {
@@ -32,6 +31,7 @@ public class NearestNeighborVisualizer {
             kdtree.insert(p);
             brute.insert(p);
         }
+        in.close();
 
         // process nearest neighbor queries
         StdDraw.enableDoubleBuffering();
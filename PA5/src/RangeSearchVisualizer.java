@@ -1,7 +1,7 @@
 /******************************************************************************
  *  Compilation:  javac RangeSearchVisualizer.java
  *  Execution:    java RangeSearchVisualizer input.txt
- *  Dependencies: PointSET.java KdTree.java
+ *  Dependencies: PointSET.java KdTree.java FastIn.java
  *
  *  Read points from a file (specified as a command-line argument) and
  *  draw to standard draw. Also draw all of the points in the rectangle
@@ -12,7 +12,6 @@
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.RectHV;
 import edu.princeton.cs.algs4.StdDraw;
@@ -23,7 +22,7 @@ public class RangeSearchVisualizer {
 
         // initialize the data structures from file
         String filename = args[0];
-        In in = new In(filename);
+        FastIn in = new FastIn(filename);
         PointSET brute = new PointSET();
         KdTree kdtree = new KdTree();
         while (!in.isEmpty()) {
@@ -33,6 +32,7 @@ public class RangeSearchVisualizer {
             kdtree.insert(p);
             brute.insert(p);
         }
+        in.close();
 
         double x0 = 0.0, y0 = 0.0;      // initial endpoint of rectangle
         double x1 = 0.0, y1 = 0.0;      // current location of mouse
@@ -0,0 +1,317 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Whitespace-separated token reader for large inputs, a fast stand-in for algs4's In and StdIn
+ *
+ * In and StdIn go through java.util.Scanner, which matches every token against a regular expression and builds a
+ * String for it before parsing. FastIn reads the input in 64 KiB blocks into one byte array and parses ints,
+ * longs and doubles straight from the bytes, so reading a number allocates nothing. Only readString() builds a
+ * String, and skip() steps over a token without looking at it.
+ *
+ * Tokens are separated by ASCII whitespace and control characters (any byte <= ' '); Unicode spaces are part of a
+ * token. Numbers follow the same syntax as Integer.parseInt / Long.parseLong / Double.parseDouble and a token that
+ * is not one throws java.util.InputMismatchException, like In. Reading past the end throws
+ * java.util.NoSuchElementException.
+ */
+public class FastIn implements AutoCloseable {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    // powers of ten that are exact as doubles, for the fast path of readDouble()
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final InputStream input;
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private int position;   // next byte to read
+    private int limit;      // one past the last byte read from the input
+    private boolean endOfInput;
+
+    // the token the last call to nextToken() found: buffer[tokenStart..position-1]
+    private int tokenStart;
+
+    // read from standard input
+    public FastIn() {
+        this(System.in);
+    }
+
+    // read from the named file
+    public FastIn(String filename) {
+        this(open(filename));
+    }
+
+    public FastIn(InputStream input) {
+        if (input == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        this.input = input;
+    }
+
+    private static InputStream open(String filename) {
+        if (filename == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        try {
+            return new FileInputStream(filename);
+        } catch (IOException e) {
+            throw new java.lang.IllegalArgumentException("could not open " + filename, e);
+        }
+    }
+
+    // is there no token left?
+    public boolean isEmpty() {
+        return !skipWhitespace();
+    }
+
+    // read the next token and return it as a String
+    public String readString() {
+        int length = nextToken();
+        return new String(buffer, tokenStart, length, StandardCharsets.UTF_8);
+    }
+
+    // step over the next token without building a String for it
+    public void skip() {
+        nextToken();
+    }
+
+    // read the next token and return it as an int
+    public int readInt() {
+        long value = parseLong(nextToken());
+        if (value != (int) value) {
+            throw mismatch("int");
+        }
+        return (int) value;
+    }
+
+    // read the next token and return it as a long
+    public long readLong() {
+        return parseLong(nextToken());
+    }
+
+    // read the next token and return it as a double
+    public double readDouble() {
+        int length = nextToken();
+        double value = parseDoubleFast(length);
+        if (Double.isNaN(value)) {
+            // exponents, long mantissas, hex floats, NaN and Infinity: let the JDK do it
+            try {
+                return Double.parseDouble(new String(buffer, tokenStart, length, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException e) {
+                throw mismatch("double");
+            }
+        }
+        return value;
+    }
+
+    public void close() {
+        try {
+            input.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // sign and decimal digits, accumulated negatively so Long.MIN_VALUE fits
+    private long parseLong(int length) {
+        int i = tokenStart;
+        int end = tokenStart + length;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            throw mismatch("integer");
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw mismatch("integer");
+            }
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw mismatch("integer");
+            }
+            value = 10 * value - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw mismatch("integer");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    // plain decimals like -12.375 whose digits fit in 53 bits: the digits and the power of ten are both exact
+    // doubles, so one division rounds correctly and gives exactly what Double.parseDouble would
+    // NaN for anything else, which readDouble() hands to Double.parseDouble
+    private double parseDoubleFast(int length) {
+        int i = tokenStart;
+        int end = tokenStart + length;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = 10 * mantissa + (b - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return Double.NaN;
+                }
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || fractionDigits >= EXACT_POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+
+        double value = mantissa / EXACT_POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private java.util.InputMismatchException mismatch(String type) {
+        return new java.util.InputMismatchException("not a valid " + type + ": "
+                + new String(buffer, tokenStart, position - tokenStart, StandardCharsets.UTF_8));
+    }
+
+    // find the next token, leave it in buffer[tokenStart..position-1] and return its length
+    private int nextToken() {
+        if (!skipWhitespace()) {
+            throw new java.util.NoSuchElementException("no tokens left");
+        }
+
+        tokenStart = position;
+        while (true) {
+            while (position < limit && (buffer[position] & 0xff) > ' ') {
+                position++;
+            }
+            if (position < limit || !fill()) {
+                return position - tokenStart;
+            }
+        }
+    }
+
+    // move past whitespace, return false when the input ends first
+    private boolean skipWhitespace() {
+        while (true) {
+            while (position < limit && (buffer[position] & 0xff) <= ' ') {
+                position++;
+            }
+            if (position < limit) {
+                return true;
+            }
+            // no token in progress, nothing to keep
+            tokenStart = position;
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    // read another block, keeping the token in progress (from tokenStart) at the front of the buffer
+    // return false at the end of the input
+    private boolean fill() {
+        if (endOfInput) {
+            return false;
+        }
+
+        int keep = tokenStart;
+        int kept = limit - keep;
+        if (kept + BLOCK_SIZE > buffer.length) {
+            // a token longer than the buffer: grow instead of sliding
+            byte[] grown = new byte[Math.max(2 * buffer.length, kept + BLOCK_SIZE)];
+            System.arraycopy(buffer, keep, grown, 0, kept);
+            buffer = grown;
+        } else {
+            System.arraycopy(buffer, keep, buffer, 0, kept);
+        }
+        tokenStart -= keep;
+        position -= keep;
+        limit = kept;
+
+        try {
+            int read;
+            do {
+                read = input.read(buffer, limit, buffer.length - limit);
+            } while (read == 0);
+            if (read < 0) {
+                endOfInput = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // unit testing (optional)
+    public static void main(String[] args) {
+        String text = "  42 -17\t+3\n9223372036854775807 -9223372036854775808 0.5 -12.375 1e3 0.1 3.14159265358979323846"
+                + "\r\n" + "hello  w\u00f6rld\n\n";
+        FastIn in = new FastIn(new java.io.ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        assert in.readInt() == 42;
+        assert in.readInt() == -17;
+        assert in.readInt() == 3;
+        assert in.readLong() == Long.MAX_VALUE;
+        assert in.readLong() == Long.MIN_VALUE;
+        assert in.readDouble() == 0.5;
+        assert in.readDouble() == -12.375;
+        assert in.readDouble() == 1000.0;
+        assert in.readDouble() == 0.1;
+        assert in.readDouble() == Double.parseDouble("3.14159265358979323846");
+        in.skip();
+        assert in.readString().equals("w\u00f6rld");
+        assert in.isEmpty();
+
+        boolean thrown = false;
+        try {
+            new FastIn(new java.io.ByteArrayInputStream("2147483648".getBytes(StandardCharsets.UTF_8))).readInt();
+        } catch (java.util.InputMismatchException e) {
+            thrown = true;
+        }
+        assert thrown;
+
+        // tokens straddling block boundaries, and one longer than a block, against Scanner
+        StringBuilder sb = new StringBuilder();
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 200000; i++) {
+            sb.append(random.nextInt()).append(' ').append(random.nextDouble() * 1000).append('\n');
+        }
+        char[] longToken = new char[3 * BLOCK_SIZE];
+        java.util.Arrays.fill(longToken, 'x');
+        sb.append(longToken);
+        FastIn fast = new FastIn(new java.io.ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        java.util.Scanner scanner = new java.util.Scanner(sb.toString()).useLocale(java.util.Locale.US);
+        for (int i = 0; i < 200000; i++) {
+            assert fast.readInt() == scanner.nextInt();
+            assert fast.readDouble() == scanner.nextDouble();
+        }
+        assert fast.readString().equals(new String(longToken));
+        assert fast.isEmpty();
+        System.out.println("FastIn ok");
+    }
+}